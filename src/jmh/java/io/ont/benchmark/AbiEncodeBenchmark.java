@@ -0,0 +1,92 @@
+package io.ont.benchmark;
+
+import io.ont.utils.CallTemplate;
+import io.ont.utils.Constant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.FunctionReturnDecoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.Utils;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.generated.Bytes32;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * mint/transfer/burn调用数据编码及ownerOf返回值解码：web3j通用路径与CallTemplate对比
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AbiEncodeBenchmark {
+    private final Bytes32 hash = new Bytes32(Numeric.hexStringToByteArray("0x1111111111111111111111111111111111111111111111111111111111111111"));
+    private final Address to = new Address("0x017bDdB122786CB01b893220b9809d6E09B0CE42");
+    private final Uint256 nftId = new Uint256(BigInteger.valueOf(123456));
+    private final String ownerResult = "0x000000000000000000000000017bddb122786cb01b893220b9809d6e09b0ce42";
+
+    @Benchmark
+    public String web3jMint() {
+        return web3jEncode(Constant.MINT, Arrays.asList(hash));
+    }
+
+    @Benchmark
+    public String web3jTransfer() {
+        return web3jEncode(Constant.TRANSFER, Arrays.asList(to, nftId));
+    }
+
+    @Benchmark
+    public String web3jBurn() {
+        return web3jEncode(Constant.BURN, Arrays.asList(nftId));
+    }
+
+    @Benchmark
+    public List<Type> web3jDecodeOwner() {
+        List<TypeReference<?>> outputParameters = Arrays.asList(new TypeReference<Address>() {
+        });
+        return FunctionReturnDecoder.decode(ownerResult, Utils.convert(outputParameters));
+    }
+
+    @Benchmark
+    public String templateMint() {
+        return CallTemplate.MINT.encode(Arrays.asList(hash));
+    }
+
+    @Benchmark
+    public String templateTransfer() {
+        return CallTemplate.TRANSFER.encode(Arrays.asList(to, nftId));
+    }
+
+    @Benchmark
+    public String templateBurn() {
+        return CallTemplate.BURN.encode(Arrays.asList(nftId));
+    }
+
+    @Benchmark
+    public List<Type> templateDecodeOwner() {
+        return CallTemplate.OWNER_OF.decode(ownerResult);
+    }
+
+    private static String web3jEncode(String name, List<Type> params) {
+        return FunctionEncoder.encode(new Function(name, params, Collections.emptyList()));
+    }
+}
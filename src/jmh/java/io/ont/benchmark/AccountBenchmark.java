@@ -0,0 +1,56 @@
+package io.ont.benchmark;
+
+import io.ont.bean.EvmAccount;
+import io.ont.utils.KeyPairPool;
+import io.ont.utils.Web3jSdkUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Keys;
+import org.web3j.utils.Numeric;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * 绑定账户：生成密钥对(密钥池为空，走请求线程现场生成的路径)；交易路径：由16进制私钥恢复Credentials
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountBenchmark {
+    private Web3jSdkUtil web3jSdkUtil;
+    private String privateKey;
+
+    @Setup
+    public void setup() throws Exception {
+        KeyPairPool keyPairPool = new KeyPairPool();
+        BenchmarkSupport.inject(keyPairPool, "configParam", BenchmarkSupport.configParam());
+        BenchmarkSupport.inject(keyPairPool, "meterRegistry", BenchmarkSupport.meterRegistry());
+        keyPairPool.start();
+        web3jSdkUtil = BenchmarkSupport.web3jSdkUtil();
+        BenchmarkSupport.inject(web3jSdkUtil, "keyPairPool", keyPairPool);
+        privateKey = Numeric.toHexStringWithPrefix(Keys.createEcKeyPair().getPrivateKey());
+    }
+
+    @Benchmark
+    public EvmAccount createAccount() throws Exception {
+        return web3jSdkUtil.createAccount();
+    }
+
+    @Benchmark
+    public Credentials credentialsFromHex() {
+        return Credentials.create(privateKey);
+    }
+}
@@ -0,0 +1,124 @@
+package io.ont.benchmark;
+
+import io.ont.bean.EvmAccount;
+import io.ont.store.AccountStore;
+import io.ont.store.impl.FileAccountStore;
+import io.ont.store.impl.MemoryAccountStore;
+import io.ont.utils.ConfigParam;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+import org.web3j.utils.Numeric;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * 1M个已绑定账户时按公钥查找(原userAccountMap的用法)：交易路径的getAddress与完整读取getByPublicKey；
+ * 账户数据随机生成，不做椭圆曲线运算以缩短准备时间；file存储的数据文件保存在target/jmh-fixture
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+@State(Scope.Benchmark)
+public class AccountStoreBenchmark {
+    private static final int KEY_MASK = 1024 * 1024 - 1;
+
+    @Param({"memory", "file"})
+    public String store;
+
+    @Param({"1000000"})
+    public int accounts;
+
+    private AccountStore accountStore;
+    private String[] publicKeys;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        boolean build = true;
+        if ("file".equals(store)) {
+            // 逐条写入会为每条记录force一次，1M条需要数分钟；数据文件只生成一次，之后重复使用
+            File dir = new File("target/jmh-fixture/account-store-" + accounts);
+            build = !new File(dir, "account.idx").exists();
+            if (build) {
+                FileSystemUtils.deleteRecursively(dir);
+            }
+            ConfigParam configParam = BenchmarkSupport.configParam();
+            configParam.EVM_ACCOUNT_STORE_DIR = dir.getPath();
+            FileAccountStore fileAccountStore = BenchmarkSupport.inject(new FileAccountStore(), "configParam", configParam);
+            fileAccountStore.open();
+            accountStore = fileAccountStore;
+        } else {
+            accountStore = new MemoryAccountStore();
+        }
+        // 固定随机种子，重复使用数据文件时生成相同的公钥序列
+        Random random = new Random(1);
+        publicKeys = new String[KEY_MASK + 1];
+        for (int i = 0; i < accounts; i++) {
+            EvmAccount account = new EvmAccount();
+            account.setUserId("user-" + i);
+            account.setPublicKey(randomHex(random, 64));
+            account.setAddress(randomHex(random, 20));
+            account.setPrivateKey(randomHex(random, 32));
+            if (build) {
+                accountStore.save(account);
+            }
+            if (i <= KEY_MASK) {
+                publicKeys[i] = account.getPublicKey();
+            }
+        }
+        if (accountStore.size() != accounts) {
+            throw new IllegalStateException("account store fixture has " + accountStore.size() + " accounts, delete target/jmh-fixture");
+        }
+        for (int i = accounts; i <= KEY_MASK; i++) {
+            publicKeys[i] = publicKeys[random.nextInt(accounts)];
+        }
+        // 打乱查询顺序，避免顺序访问
+        for (int i = KEY_MASK; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String tmp = publicKeys[i];
+            publicKeys[i] = publicKeys[j];
+            publicKeys[j] = tmp;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (accountStore instanceof FileAccountStore) {
+            ((FileAccountStore) accountStore).close();
+        }
+    }
+
+    @Benchmark
+    public String getAddress() {
+        return accountStore.getAddress(publicKeys[cursor++ & KEY_MASK]);
+    }
+
+    @Benchmark
+    public EvmAccount getByPublicKey() {
+        return accountStore.getByPublicKey(publicKeys[cursor++ & KEY_MASK]);
+    }
+
+    private static String randomHex(Random random, int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        bytes[0] |= 0x10;
+        return Numeric.toHexString(bytes);
+    }
+}
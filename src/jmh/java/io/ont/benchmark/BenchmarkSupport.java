@@ -0,0 +1,61 @@
+package io.ont.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.ont.utils.ConfigParam;
+import io.ont.utils.EvmMetrics;
+import io.ont.utils.Web3jSdkUtil;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.math.BigInteger;
+
+
+/**
+ * 基准测试不启动Spring容器，按application.properties中的取值手工组装被测组件
+ */
+final class BenchmarkSupport {
+    static final String NFT_CONTRACT = "0x3F786d564b72CCf4CD4B65170358910fe2074Ff5";
+    static final long CHAIN_ID = 2021;
+
+    private BenchmarkSupport() {
+    }
+
+    static ConfigParam configParam() {
+        ConfigParam configParam = new ConfigParam();
+        configParam.NFT_CONTRACT = NFT_CONTRACT;
+        configParam.EVM_CHAIN_ID = CHAIN_ID;
+        configParam.EVM_GAS_LIMIT = BigInteger.valueOf(1000000);
+        configParam.EVM_GAS_PRICE = BigInteger.ZERO;
+        configParam.EVM_ACCOUNT_SECRET = "benchmark-secret";
+        configParam.EVM_KEYPOOL_SIZE = 1;
+        configParam.EVM_KEYPOOL_THREADS = 0;
+        configParam.EVM_SIGN_THREADS = 1;
+        configParam.EVM_SIGN_QUEUE_SIZE = 1024;
+        return configParam;
+    }
+
+    static SimpleMeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+
+    /**
+     * 不连接节点的Web3jSdkUtil，指标记录与线上一致
+     */
+    static Web3jSdkUtil web3jSdkUtil() {
+        Web3jSdkUtil web3jSdkUtil = new Web3jSdkUtil();
+        inject(web3jSdkUtil, "configParam", configParam());
+        inject(web3jSdkUtil, "evmMetrics", inject(new EvmMetrics(), "meterRegistry", meterRegistry()));
+        web3jSdkUtil.init();
+        return web3jSdkUtil;
+    }
+
+    /**
+     * 注入@Autowired字段
+     */
+    static <T> T inject(T target, String fieldName, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), fieldName);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+        return target;
+    }
+}
@@ -0,0 +1,86 @@
+package io.ont.benchmark;
+
+import io.ont.bean.JournalEntry;
+import io.ont.store.TxJournal;
+import io.ont.utils.ConfigParam;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * 交易日志写入并等待落盘：单线程时每笔一次fsync，多线程并发时组提交摊薄fsync
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JournalBenchmark {
+    private static final String TX_HEX = "0x" + String.join("", Collections.nCopies(110, "ab"));
+
+    private final AtomicLong sequence = new AtomicLong();
+    private File dir;
+    private TxJournal txJournal;
+
+    @Setup
+    public void setup() throws Exception {
+        dir = new File("target/jmh-journal");
+        FileSystemUtils.deleteRecursively(dir);
+        ConfigParam configParam = BenchmarkSupport.configParam();
+        configParam.EVM_JOURNAL_ENABLED = true;
+        configParam.EVM_JOURNAL_DIR = dir.getPath();
+        configParam.EVM_JOURNAL_SEGMENT_SIZE = 64L * 1024 * 1024;
+        configParam.EVM_TX_STATUS_TTL = 3600;
+        txJournal = new TxJournal();
+        BenchmarkSupport.inject(txJournal, "configParam", configParam);
+        BenchmarkSupport.inject(txJournal, "meterRegistry", BenchmarkSupport.meterRegistry());
+        txJournal.open();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        txJournal.close();
+        FileSystemUtils.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void sentSingle() {
+        sentAndResolved();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void sentConcurrent() {
+        sentAndResolved();
+    }
+
+    private void sentAndResolved() {
+        String txHash = String.format("0x%064x", sequence.incrementAndGet());
+        JournalEntry entry = new JournalEntry();
+        entry.setTxHash(txHash);
+        entry.setFunction("mint");
+        entry.setAddress(BenchmarkSupport.NFT_CONTRACT);
+        entry.setTxHex(TX_HEX);
+        entry.setTime(System.currentTimeMillis());
+        txJournal.sent(Collections.singletonList(entry)).join();
+        txJournal.resolved(txHash, "success", "1");
+    }
+}
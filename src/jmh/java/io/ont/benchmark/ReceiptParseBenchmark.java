@@ -0,0 +1,55 @@
+package io.ont.benchmark;
+
+import io.ont.utils.Constant;
+import io.ont.utils.Web3jSdkUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * 从mint收据的Transfer事件中解析nftId
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReceiptParseBenchmark {
+    private Web3jSdkUtil web3jSdkUtil;
+    private TransactionReceipt receipt;
+
+    @Setup
+    public void setup() {
+        web3jSdkUtil = BenchmarkSupport.web3jSdkUtil();
+        Log transferLog = new Log();
+        transferLog.setAddress(BenchmarkSupport.NFT_CONTRACT.toLowerCase());
+        transferLog.setTopics(Arrays.asList(Constant.TRANSFER_EVENT_HASH,
+                "0x0000000000000000000000000000000000000000000000000000000000000000",
+                "0x000000000000000000000000017bddb122786cb01b893220b9809d6e09b0ce42",
+                "0x000000000000000000000000000000000000000000000000000000000001e240"));
+        transferLog.setData("0x");
+        receipt = new TransactionReceipt();
+        receipt.setStatus(Constant.STATUS_SUCCESS);
+        receipt.setLogs(Collections.singletonList(transferLog));
+    }
+
+    @Benchmark
+    public String getNftIdFromReceipt() {
+        return web3jSdkUtil.getNftIdFromReceipt(receipt);
+    }
+}
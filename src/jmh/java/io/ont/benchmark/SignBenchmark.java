@@ -0,0 +1,68 @@
+package io.ont.benchmark;
+
+import io.ont.utils.CallTemplate;
+import io.ont.utils.TxSigner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.web3j.abi.datatypes.generated.Bytes32;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Keys;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.TransactionEncoder;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * 带chainId的交易签名：TransactionEncoder.signMessage与TxSigner(单线程签名池，含线程切换)对比
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SignBenchmark {
+    private Credentials credentials;
+    private RawTransaction transaction;
+    private TxSigner txSigner;
+
+    @Setup
+    public void setup() throws Exception {
+        credentials = Credentials.create(Keys.createEcKeyPair());
+        String data = CallTemplate.MINT.encode(Collections.singletonList(new Bytes32(new byte[32])));
+        transaction = RawTransaction.createTransaction(BigInteger.valueOf(42), BigInteger.ZERO, BigInteger.valueOf(1000000),
+                BenchmarkSupport.NFT_CONTRACT, data);
+        txSigner = new TxSigner();
+        BenchmarkSupport.inject(txSigner, "configParam", BenchmarkSupport.configParam());
+        BenchmarkSupport.inject(txSigner, "meterRegistry", BenchmarkSupport.meterRegistry());
+        txSigner.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        txSigner.stop();
+    }
+
+    @Benchmark
+    public String web3jSignMessage() {
+        return Numeric.toHexString(TransactionEncoder.signMessage(transaction, BenchmarkSupport.CHAIN_ID, credentials));
+    }
+
+    @Benchmark
+    public String txSigner() {
+        return txSigner.sign(transaction, credentials);
+    }
+}
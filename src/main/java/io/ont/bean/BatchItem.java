@@ -0,0 +1,22 @@
+package io.ont.bean;
+
+import lombok.Data;
+
+
+@Data
+public class BatchItem {
+    private String value;
+    private String error;
+
+    public static BatchItem value(String value) {
+        BatchItem item = new BatchItem();
+        item.setValue(value);
+        return item;
+    }
+
+    public static BatchItem error(String error) {
+        BatchItem item = new BatchItem();
+        item.setError(error);
+        return item;
+    }
+}
@@ -0,0 +1,18 @@
+package io.ont.bean;
+
+import lombok.Data;
+
+
+@Data
+public class JournalEntry {
+    private String txHash;
+    private String function;
+    private String address;
+    private String txHex;
+    /**
+     * 未完结时为null
+     */
+    private String status;
+    private String nftId;
+    private long time;
+}
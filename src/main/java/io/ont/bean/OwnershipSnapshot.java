@@ -0,0 +1,24 @@
+package io.ont.bean;
+
+import lombok.Data;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+
+@Data
+public class OwnershipSnapshot {
+    /**
+     * 回填截止的区块高度，每个token的归属不早于该区块
+     */
+    private long blockNumber;
+    /**
+     * nftId->owner，基础归属，以本地索引为基础时是索引的实时视图
+     */
+    private Map<String, String> owners = Collections.emptyMap();
+    /**
+     * 回填区块内有Transfer的token，覆盖owners；已销毁的owner为null
+     */
+    private Map<String, String> changes = new HashMap<>();
+}
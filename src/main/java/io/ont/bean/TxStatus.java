@@ -0,0 +1,13 @@
+package io.ont.bean;
+
+import lombok.Data;
+
+
+@Data
+public class TxStatus {
+    private String txHash;
+    private String function;
+    private String status;
+    private String nftId;
+    private long updateTime;
+}
@@ -0,0 +1,126 @@
+package io.ont.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.ont.rpc.AdmissionLimiter;
+import io.ont.rpc.NodeEndpoint;
+import io.ont.rpc.RoutingWeb3jService;
+import io.ont.utils.ConfigParam;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.http.HttpService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * 节点RPC客户端，整个应用共用一个连接池，只在应用停止时关闭
+ */
+@Configuration
+public class Web3jConfig {
+
+    @Autowired
+    private ConfigParam configParam;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Bean(destroyMethod = "")
+    public OkHttpClient rpcHttpClient() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(configParam.EVM_RPC_MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(configParam.EVM_RPC_MAX_REQUESTS_PER_HOST);
+        ConnectionPool connectionPool = new ConnectionPool(configParam.EVM_RPC_POOL_MAX_IDLE, configParam.EVM_RPC_POOL_KEEP_ALIVE, TimeUnit.SECONDS);
+        return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(connectionPool)
+                .connectTimeout(configParam.EVM_RPC_CONNECT_TIMEOUT, TimeUnit.MILLISECONDS)
+                .readTimeout(configParam.EVM_RPC_READ_TIMEOUT, TimeUnit.MILLISECONDS)
+                .writeTimeout(configParam.EVM_RPC_WRITE_TIMEOUT, TimeUnit.MILLISECONDS)
+                .retryOnConnectionFailure(true)
+                .build();
+    }
+
+    /**
+     * evm.web3j.url可配置多个节点，以逗号分隔
+     */
+    @Bean(destroyMethod = "")
+    public RoutingWeb3jService routingWeb3jService(OkHttpClient rpcHttpClient) {
+        List<NodeEndpoint> endpoints = new ArrayList<>();
+        for (String url : configParam.EVM_WEB3J_URL) {
+            HttpService httpService = new HttpService(url.trim(), rpcHttpClient);
+            endpoints.add(new NodeEndpoint(url.trim(), httpService, configParam.EVM_RPC_EJECT_FAILURES, configParam.EVM_RPC_EJECT_TIME));
+        }
+        return new RoutingWeb3jService(endpoints, configParam.EVM_RPC_HEDGE_ENABLED, configParam.EVM_RPC_HEDGE_MIN_DELAY, configParam.EVM_RPC_HEDGE_THREADS, admissionLimiters());
+    }
+
+    /**
+     * 按方法类别的准入限制：写交易(含分配nonce)、收据轮询、只读调用；区块、日志等后台请求不限制
+     */
+    private Map<String, AdmissionLimiter> admissionLimiters() {
+        Map<String, AdmissionLimiter> limiters = new HashMap<>();
+        if (!configParam.EVM_ADMISSION_ENABLED) {
+            return limiters;
+        }
+        register(limiters, limiter("write", configParam.EVM_ADMISSION_WRITE_LIMIT, configParam.EVM_ADMISSION_WRITE_QUEUE, configParam.EVM_ADMISSION_WRITE_RATE),
+                "eth_sendRawTransaction", "eth_getTransactionCount");
+        register(limiters, limiter("receipt", configParam.EVM_ADMISSION_RECEIPT_LIMIT, configParam.EVM_ADMISSION_RECEIPT_QUEUE, configParam.EVM_ADMISSION_RECEIPT_RATE),
+                "eth_getTransactionReceipt", "eth_getBlockReceipts");
+        register(limiters, limiter("view", configParam.EVM_ADMISSION_VIEW_LIMIT, configParam.EVM_ADMISSION_VIEW_QUEUE, configParam.EVM_ADMISSION_VIEW_RATE),
+                "eth_call", "eth_estimateGas");
+        return limiters;
+    }
+
+    private AdmissionLimiter limiter(String name, int limit, int queue, double rate) {
+        Counter rejected = meterRegistry.counter("evm.admission.rejected", "class", name);
+        AdmissionLimiter limiter = new AdmissionLimiter(name, limit, queue, rate, configParam.EVM_ADMISSION_WAIT,
+                configParam.EVM_ADMISSION_ADAPTIVE, configParam.EVM_ADMISSION_TOLERANCE, rejected::increment);
+        meterRegistry.gauge("evm.admission.limit", Tags.of("class", name), limiter, AdmissionLimiter::getLimit);
+        meterRegistry.gauge("evm.admission.inflight", Tags.of("class", name), limiter, AdmissionLimiter::getInflight);
+        return limiter;
+    }
+
+    private static void register(Map<String, AdmissionLimiter> limiters, AdmissionLimiter limiter, String... methods) {
+        for (String method : methods) {
+            limiters.put(method, limiter);
+        }
+    }
+
+    @Bean(destroyMethod = "")
+    public Web3j web3j(RoutingWeb3jService routingWeb3jService) {
+        return Web3j.build(routingWeb3jService);
+    }
+
+    /**
+     * 应用停止时先关闭Web3j，再释放连接池和请求线程
+     */
+    @Bean(destroyMethod = "close")
+    public RpcClientLifecycle rpcClientLifecycle(OkHttpClient rpcHttpClient, Web3j web3j) {
+        return new RpcClientLifecycle(rpcHttpClient, web3j);
+    }
+
+    public static class RpcClientLifecycle {
+        private final OkHttpClient client;
+        private final Web3j web3j;
+
+        RpcClientLifecycle(OkHttpClient client, Web3j web3j) {
+            this.client = client;
+            this.web3j = web3j;
+        }
+
+        public void close() {
+            web3j.shutdown();
+            client.dispatcher().executorService().shutdown();
+            client.connectionPool().evictAll();
+        }
+    }
+}
@@ -1,20 +1,37 @@
 package io.ont.controller;
 
+import io.ont.bean.BatchItem;
 import io.ont.bean.Result;
+import io.ont.bean.TxStatus;
+import io.ont.controller.vo.MintBatchReq;
 import io.ont.controller.vo.MintReq;
+import io.ont.controller.vo.NftListReq;
 import io.ont.controller.vo.NftReq;
 import io.ont.controller.vo.TransferReq;
 import io.ont.controller.vo.UserReq;
+import io.ont.exception.EvmBusyException;
+import io.ont.exception.EvmParamException;
 import io.ont.service.CommonService;
 import io.ont.utils.Constant;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 
 @RestController
 @RequestMapping("/common")
 @CrossOrigin
 public class CommonController {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     @Autowired
     private CommonService commonService;
 
@@ -25,21 +42,36 @@ public class CommonController {
     }
 
     @PostMapping("/mint")
-    public Result mintNft(@RequestBody MintReq req) {
-        String txHash = commonService.mint(req);
-        return new Result("mint", Constant.SUCCESS_CODE, Constant.SUCCESS_DESC, txHash);
+    public CompletableFuture<Result> mintNft(@RequestBody MintReq req, @RequestParam(defaultValue = "false") boolean accept,
+                                             @RequestHeader(value = Constant.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return commonService.mintAsync(req, accept, idempotencyKey)
+                .thenApply(txHash -> new Result("mint", Constant.SUCCESS_CODE, Constant.SUCCESS_DESC, txHash));
     }
 
     @PostMapping("/transfer")
-    public Result transferNft(@RequestBody TransferReq req) {
-        String txHash = commonService.transfer(req);
-        return new Result("transfer", Constant.SUCCESS_CODE, Constant.SUCCESS_DESC, txHash);
+    public CompletableFuture<Result> transferNft(@RequestBody TransferReq req, @RequestParam(defaultValue = "false") boolean accept,
+                                                 @RequestHeader(value = Constant.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return commonService.transferAsync(req, accept, idempotencyKey)
+                .thenApply(txHash -> new Result("transfer", Constant.SUCCESS_CODE, Constant.SUCCESS_DESC, txHash));
     }
 
     @PostMapping("/burn")
-    public Result burnNft(@RequestBody NftReq req) {
-        String txHash = commonService.burn(req);
-        return new Result("burn", Constant.SUCCESS_CODE, Constant.SUCCESS_DESC, txHash);
+    public CompletableFuture<Result> burnNft(@RequestBody NftReq req, @RequestParam(defaultValue = "false") boolean accept,
+                                             @RequestHeader(value = Constant.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return commonService.burnAsync(req, accept, idempotencyKey)
+                .thenApply(txHash -> new Result("burn", Constant.SUCCESS_CODE, Constant.SUCCESS_DESC, txHash));
+    }
+
+    @PostMapping("/mint-batch")
+    public CompletableFuture<Result> mintNftBatch(@RequestBody MintBatchReq req) {
+        return commonService.mintBatchAsync(req)
+                .thenApply(nftIdMap -> new Result("mintBatch", Constant.SUCCESS_CODE, Constant.SUCCESS_DESC, nftIdMap));
+    }
+
+    @GetMapping("/tx-status")
+    public Result getTxStatus(String txHash) {
+        TxStatus txStatus = commonService.getTxStatus(txHash);
+        return new Result("getTxStatus", Constant.SUCCESS_CODE, Constant.SUCCESS_DESC, txStatus);
     }
 
     @GetMapping("/meta-data")
@@ -53,4 +85,49 @@ public class CommonController {
         String hash = commonService.getNftOwner(nftId);
         return new Result("getNftOwner", Constant.SUCCESS_CODE, Constant.SUCCESS_DESC, hash);
     }
+
+    @PostMapping("/meta-data")
+    public Result getMetaDataBatch(@RequestBody NftListReq req) {
+        Map<String, BatchItem> hashMap = commonService.getMetaDataBatch(req.getNftIds());
+        return new Result("getMetaDataBatch", Constant.SUCCESS_CODE, Constant.SUCCESS_DESC, hashMap);
+    }
+
+    @PostMapping("/owners")
+    public Result getNftOwnerBatch(@RequestBody NftListReq req) {
+        Map<String, BatchItem> ownerMap = commonService.getNftOwnerBatch(req.getNftIds());
+        return new Result("getNftOwnerBatch", Constant.SUCCESS_CODE, Constant.SUCCESS_DESC, ownerMap);
+    }
+
+    @GetMapping("/tokens-of-owner")
+    public Result getTokensOfOwner(String address) {
+        List<String> nftIds = commonService.getTokensOfOwner(address);
+        return new Result("getTokensOfOwner", Constant.SUCCESS_CODE, Constant.SUCCESS_DESC, nftIds);
+    }
+
+    /**
+     * 导出全部token的归属，逐行输出{"nftId","owner","hash"}(NDJSON)，行顺序不固定；
+     * 响应头给出回填截止区块，每行的归属不早于该区块；输出中途失败时连接异常断开，不会正常结束
+     */
+    @GetMapping("/owners/export")
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> exportOwners() {
+        return commonService.exportOwnersAsync().thenApply(snapshot -> ResponseEntity.ok()
+                .contentType(NDJSON)
+                .header(Constant.BLOCK_NUMBER_HEADER, String.valueOf(snapshot.getBlockNumber()))
+                .body(out -> commonService.writeOwners(snapshot, out)));
+    }
+
+    /**
+     * 超过节点准入限制的请求立即返回，客户端应退避后重试
+     */
+    @ExceptionHandler(EvmBusyException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public Result busy(EvmBusyException e, HttpServletRequest request) {
+        return new Result(request.getRequestURI(), Constant.BUSY_CODE, e.getMessage(), null);
+    }
+
+    @ExceptionHandler(EvmParamException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Result badParam(EvmParamException e, HttpServletRequest request) {
+        return new Result(request.getRequestURI(), Constant.PARAM_ERROR_CODE, e.getMessage(), null);
+    }
 }
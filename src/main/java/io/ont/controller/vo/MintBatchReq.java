@@ -0,0 +1,12 @@
+package io.ont.controller.vo;
+
+import lombok.Data;
+
+import java.util.List;
+
+
+@Data
+public class MintBatchReq {
+    private String publicKey;
+    private List<String> hashes;
+}
@@ -0,0 +1,11 @@
+package io.ont.controller.vo;
+
+import lombok.Data;
+
+import java.util.List;
+
+
+@Data
+public class NftListReq {
+    private List<String> nftIds;
+}
@@ -0,0 +1,13 @@
+package io.ont.exception;
+
+
+/**
+ * 请求超过访问节点的并发或速率限制，被直接拒绝，调用方应退避后重试
+ */
+public class EvmBusyException extends EvmDemoException {
+
+    public EvmBusyException(String msg) {
+        super(msg);
+    }
+
+}
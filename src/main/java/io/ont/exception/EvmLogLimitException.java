@@ -0,0 +1,13 @@
+package io.ont.exception;
+
+
+/**
+ * eth_getLogs查询范围内的结果超过节点限制，需缩小区块范围后重试
+ */
+public class EvmLogLimitException extends EvmDemoException {
+
+    public EvmLogLimitException(String msg) {
+        super(msg);
+    }
+
+}
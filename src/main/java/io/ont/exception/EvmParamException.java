@@ -0,0 +1,13 @@
+package io.ont.exception;
+
+
+/**
+ * 请求参数不合法，在提交交易前直接拒绝
+ */
+public class EvmParamException extends EvmDemoException {
+
+    public EvmParamException(String msg) {
+        super(msg);
+    }
+
+}
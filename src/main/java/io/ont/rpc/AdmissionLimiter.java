@@ -0,0 +1,236 @@
+package io.ont.rpc;
+
+import io.ont.exception.EvmBusyException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * 一类节点请求(写交易、收据轮询、只读调用)的准入控制：并发上限、令牌桶速率和有界等待队列。
+ * 开启自适应时并发上限按AIMD调整，只在上限被用满一半以上时调整(上限没用满时延迟变化与并发无关)：
+ * 请求延迟与同规模请求基线延迟之比的短期均值超过tolerance或请求失败时乘性减小(每个RTT最多一次)，否则加性增大，范围[1, 配置上限]。
+ * 同类请求中单个调用和batch调用的延迟差别很大，基线按batch大小(2的幂分桶)分别维护，取未拥塞样本的低分位(约20%)，
+ * 拥塞时的样本不计入，避免基线跟着过载一起升高。
+ * 等待许可或令牌超过wait毫秒、或等待队列已满时立即拒绝
+ */
+@Slf4j
+public class AdmissionLimiter {
+    private static final double MIN_LIMIT = 1;
+    private static final double DECREASE = 0.9;
+    private static final double RATIO_ALPHA = 0.1;
+    private static final double BASELINE_DOWN = 0.02;
+    private static final double BASELINE_UP = 0.005;
+    private static final int SIZE_BUCKETS = 12;
+
+    private final String name;
+    private final int maxLimit;
+    private final int queueSize;
+    private final long intervalNanos;
+    private final long waitNanos;
+    private final boolean adaptive;
+    private final double tolerance;
+    private final Runnable onReject;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private double limit;
+    private int inflight;
+    private int waiters;
+    private final double[] baselines = new double[SIZE_BUCKETS];
+    private double ratio = 1;
+    private double shortRtt;
+    private long lastDecreaseNanos;
+    private long nextPermitNanos;
+
+    /**
+     * @param name 请求类别
+     * @param maxLimit 并发上限，自适应时为初始值和最大值
+     * @param queueSize 等待队列长度
+     * @param rate 每秒请求数，0为不限
+     * @param waitMillis 最长等待时间
+     * @param adaptive 是否按延迟自适应调整并发上限
+     * @param tolerance 延迟超过同规模请求基线的倍数即视为节点过载
+     * @param onReject 拒绝时回调(计数)
+     */
+    public AdmissionLimiter(String name, int maxLimit, int queueSize, double rate, long waitMillis, boolean adaptive, double tolerance, Runnable onReject) {
+        this.name = name;
+        this.maxLimit = maxLimit;
+        this.queueSize = queueSize;
+        this.intervalNanos = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+        this.waitNanos = TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        this.adaptive = adaptive;
+        this.tolerance = tolerance;
+        this.onReject = onReject;
+        this.limit = maxLimit;
+    }
+
+    /**
+     * 获取一个许可，必须在finally中调用release
+     * @throws EvmBusyException 超过等待时间或等待队列已满
+     */
+    public void acquire() {
+        long start = System.nanoTime();
+        if (intervalNanos > 0) {
+            long permitAt = reservePermit(start);
+            try {
+                if (permitAt > start) {
+                    sleepUntil(permitAt);
+                }
+                acquireSlot(start + waitNanos);
+            } catch (EvmBusyException e) {
+                // 没有发出的请求不占用速率
+                cancelPermit();
+                throw e;
+            }
+        } else {
+            acquireSlot(start + waitNanos);
+        }
+    }
+
+    private void acquireSlot(long deadline) {
+        lock.lock();
+        try {
+            if (inflight < currentLimit()) {
+                inflight++;
+                return;
+            }
+            if (waiters >= queueSize) {
+                throw reject("queue full");
+            }
+            waiters++;
+            try {
+                while (inflight >= currentLimit()) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw reject("wait timeout");
+                    }
+                    available.awaitNanos(remaining);
+                }
+                inflight++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject("interrupted");
+            } finally {
+                waiters--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 归还许可并用本次延迟调整并发上限
+     * @param latencyNanos
+     * @param size batch中的请求数，单个调用为1
+     * @param failed 请求是否失败(IO错误、超时)
+     */
+    public void release(long latencyNanos, int size, boolean failed) {
+        lock.lock();
+        try {
+            inflight--;
+            if (adaptive) {
+                adjust(latencyNanos, size, failed);
+            }
+            if (inflight < currentLimit()) {
+                available.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return currentLimit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInflight() {
+        lock.lock();
+        try {
+            return inflight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adjust(long latencyNanos, int size, boolean failed) {
+        if (!failed) {
+            int bucket = Math.min(SIZE_BUCKETS - 1, 31 - Integer.numberOfLeadingZeros(Math.max(1, size)));
+            double baseline = baselines[bucket];
+            double sampleRatio = baseline == 0 ? 1 : latencyNanos / baseline;
+            if (baseline == 0 || latencyNanos < baseline) {
+                baselines[bucket] = baseline == 0 ? latencyNanos : baseline + (latencyNanos - baseline) * BASELINE_DOWN;
+            } else if (sampleRatio < tolerance) {
+                baselines[bucket] = baseline + (latencyNanos - baseline) * BASELINE_UP;
+            }
+            ratio = ratio * (1 - RATIO_ALPHA) + sampleRatio * RATIO_ALPHA;
+            shortRtt = shortRtt == 0 ? latencyNanos : shortRtt * (1 - RATIO_ALPHA) + latencyNanos * RATIO_ALPHA;
+        }
+        long now = System.nanoTime();
+        boolean saturated = inflight + 1 >= limit / 2;
+        if ((failed || ratio > tolerance) && saturated) {
+            // 同一轮拥塞只减一次
+            if (now - lastDecreaseNanos > shortRtt) {
+                int before = currentLimit();
+                limit = Math.max(MIN_LIMIT, limit * DECREASE);
+                lastDecreaseNanos = now;
+                if (currentLimit() != before) {
+                    log.debug("admission limit decreased, class:{}, limit:{}, latency ratio:{}", name, currentLimit(), ratio);
+                }
+            }
+        } else if (saturated && ratio <= tolerance) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    private int currentLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * 令牌桶：预约下一个令牌的时间，超过等待时间时拒绝
+     */
+    private synchronized long reservePermit(long now) {
+        long permitAt = Math.max(nextPermitNanos, now);
+        if (permitAt - now > waitNanos) {
+            throw reject("rate limited");
+        }
+        nextPermitNanos = permitAt + intervalNanos;
+        return permitAt;
+    }
+
+    /**
+     * 退回预约的令牌；之后已有其他预约时下一个预约提前一个间隔，总速率不变
+     */
+    private synchronized void cancelPermit() {
+        nextPermitNanos -= intervalNanos;
+    }
+
+    private void sleepUntil(long nanoTime) {
+        long remaining;
+        while ((remaining = nanoTime - System.nanoTime()) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject("interrupted");
+            }
+        }
+    }
+
+    private EvmBusyException reject(String reason) {
+        onReject.run();
+        return new EvmBusyException("node " + name + " requests " + reason);
+    }
+}
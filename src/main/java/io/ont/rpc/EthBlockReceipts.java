@@ -0,0 +1,17 @@
+package io.ont.rpc;
+
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.util.List;
+
+
+/**
+ * eth_getBlockReceipts的响应，web3j 4.8没有内置该方法；区块不存在时result为null
+ */
+public class EthBlockReceipts extends Response<List<TransactionReceipt>> {
+
+    public List<TransactionReceipt> getReceipts() {
+        return getResult();
+    }
+}
@@ -0,0 +1,170 @@
+package io.ont.rpc;
+
+import io.ont.utils.Constant;
+import lombok.extern.slf4j.Slf4j;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+
+/**
+ * 单个节点及其被动健康统计：延迟EWMA、错误率EWMA、近期延迟p95，连续失败达到阈值后摘除一段时间。
+ * IO错误和节点自身的JSON-RPC错误(内部错误、状态缺失等)都算失败；合约执行revert、交易池拒绝、参数错误等由请求本身导致的错误不算
+ */
+@Slf4j
+public class NodeEndpoint {
+    private static final double ALPHA = 0.2;
+    private static final int WINDOW = 128;
+    private static final int P95_REFRESH = 32;
+    private static final int REVERT_CODE = 3;
+    private static final int INVALID_REQUEST_CODE = -32600;
+    private static final int INVALID_PARAMS_CODE = -32602;
+    /**
+     * 由请求本身导致的错误信息(小写)
+     */
+    private static final String[] REQUEST_ERRORS = {"revert", Constant.NONCE_TOO_LOW, "nonce too high", Constant.ALREADY_KNOWN,
+            Constant.REPLACEMENT_UNDERPRICED, "insufficient funds", "intrinsic gas too low", "gas limit",
+            "transaction underpriced", "invalid sender"};
+
+    private final String url;
+    private final Web3jService service;
+    private final int ejectFailures;
+    private final long ejectTime;
+
+    private final long[] latencies = new long[WINDOW];
+    private int latencyCount;
+    private volatile long p95 = -1;
+    private volatile double ewmaLatency = 0;
+    private volatile double errorRate = 0;
+    private int consecutiveFailures;
+    private volatile long ejectedUntil;
+
+    public NodeEndpoint(String url, Web3jService service, int ejectFailures, long ejectTime) {
+        this.url = url;
+        this.service = service;
+        this.ejectFailures = ejectFailures;
+        this.ejectTime = ejectTime;
+    }
+
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        long start = System.nanoTime();
+        try {
+            T response = service.send(request, responseType);
+            Response.Error error = response.getError();
+            if (isNodeError(error)) {
+                onFailure(error.getMessage());
+            } else {
+                onSuccess(System.nanoTime() - start);
+            }
+            return response;
+        } catch (IOException e) {
+            onFailure(e.getMessage());
+            throw e;
+        }
+    }
+
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        long start = System.nanoTime();
+        try {
+            BatchResponse response = service.sendBatch(batchRequest);
+            Response.Error error = nodeError(response);
+            if (error != null) {
+                onFailure(error.getMessage());
+            } else {
+                onSuccess(System.nanoTime() - start);
+            }
+            return response;
+        } catch (IOException e) {
+            onFailure(e.getMessage());
+            throw e;
+        }
+    }
+
+    public boolean isHealthy() {
+        return System.currentTimeMillis() >= ejectedUntil;
+    }
+
+    /**
+     * 路由打分，越小越优先
+     */
+    public double score() {
+        return (ewmaLatency + 1) * (1 + errorRate * 10);
+    }
+
+    /**
+     * 对冲等待时间：近期p95延迟，样本不足时返回-1
+     */
+    public long p95Millis() {
+        return p95 < 0 ? -1 : p95 / 1000000;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void close() throws IOException {
+        service.close();
+    }
+
+    private synchronized void onSuccess(long latency) {
+        ewmaLatency = ewmaLatency == 0 ? latency : ewmaLatency * (1 - ALPHA) + latency * ALPHA;
+        errorRate = errorRate * (1 - ALPHA);
+        consecutiveFailures = 0;
+        latencies[latencyCount % WINDOW] = latency;
+        latencyCount++;
+        if (latencyCount % P95_REFRESH == 0) {
+            long[] sorted = Arrays.copyOf(latencies, Math.min(latencyCount, WINDOW));
+            Arrays.sort(sorted);
+            p95 = sorted[(int) (sorted.length * 0.95)];
+        }
+    }
+
+    /**
+     * 判断JSON-RPC错误是否说明节点本身异常
+     * @param error
+     * @return
+     */
+    static boolean isNodeError(Response.Error error) {
+        if (error == null) {
+            return false;
+        }
+        int code = error.getCode();
+        if (code == REVERT_CODE || code == INVALID_REQUEST_CODE || code == Constant.METHOD_NOT_FOUND_CODE
+                || code == INVALID_PARAMS_CODE || code == Constant.LOG_LIMIT_CODE) {
+            return false;
+        }
+        String message = error.getMessage() == null ? "" : error.getMessage().toLowerCase();
+        for (String requestError : REQUEST_ERRORS) {
+            if (message.contains(requestError)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Response.Error nodeError(BatchResponse batchResponse) {
+        if (batchResponse.getResponses() == null) {
+            return null;
+        }
+        for (Response<?> response : batchResponse.getResponses()) {
+            if (response != null && isNodeError(response.getError())) {
+                return response.getError();
+            }
+        }
+        return null;
+    }
+
+    private synchronized void onFailure(String message) {
+        errorRate = errorRate * (1 - ALPHA) + ALPHA;
+        consecutiveFailures++;
+        if (consecutiveFailures >= ejectFailures && isHealthy()) {
+            ejectedUntil = System.currentTimeMillis() + ejectTime;
+            log.warn("rpc node ejected, url:{}, failures:{}, error:{}", url, consecutiveFailures, message);
+        }
+    }
+}
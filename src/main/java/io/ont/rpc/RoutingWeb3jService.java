@@ -0,0 +1,252 @@
+package io.ont.rpc;
+
+import io.reactivex.Flowable;
+import lombok.extern.slf4j.Slf4j;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.websocket.events.Notification;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * 多节点路由：按观测到的延迟和错误率选择节点，被摘除的节点不参与路由；
+ * 只读请求在首个节点超过其p95延迟仍未返回时，向第二个节点发出相同请求，取先返回的结果；
+ * 写请求每次只发往一个健康节点；eth_getTransactionCount取PENDING nonce依赖节点的交易池，按写请求处理；
+ * 配置了准入限制的方法先取得对应类别的许可再发出；请求线程池有上限，满时在调用线程上直接执行
+ */
+@Slf4j
+public class RoutingWeb3jService implements Web3jService {
+    private static final Set<String> READ_METHODS = new HashSet<>(Arrays.asList(
+            "eth_call", "eth_getTransactionReceipt", "eth_blockNumber", "eth_getBlockByNumber",
+            "eth_getBlockByHash", "eth_getLogs", "eth_estimateGas",
+            "eth_gasPrice", "eth_chainId", "eth_getBlockReceipts"));
+
+    private final List<NodeEndpoint> endpoints;
+    private final boolean hedgeEnabled;
+    private final long hedgeMinDelay;
+    private final ExecutorService hedgeExecutor;
+    private final Map<String, AdmissionLimiter> limiters;
+
+    /**
+     * @param hedgeThreads 对冲和异步请求线程数上限
+     * @param limiters 按JSON-RPC方法名的准入限制，未配置的方法不限制
+     */
+    public RoutingWeb3jService(List<NodeEndpoint> endpoints, boolean hedgeEnabled, long hedgeMinDelay, int hedgeThreads, Map<String, AdmissionLimiter> limiters) {
+        this.endpoints = endpoints;
+        this.limiters = limiters;
+        this.hedgeEnabled = hedgeEnabled && endpoints.size() > 1;
+        this.hedgeMinDelay = hedgeMinDelay;
+        AtomicInteger counter = new AtomicInteger();
+        this.hedgeExecutor = new ThreadPoolExecutor(0, Math.max(1, hedgeThreads), 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "rpc-hedge-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, (r, executor) -> {
+            // 线程用尽时在调用线程上执行(对冲退化为顺序请求)；已关闭时拒绝，避免任务被静默丢弃
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("rpc executor is shut down");
+            }
+            r.run();
+        });
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        return admit(request.getMethod(), 1, () -> route(request, responseType));
+    }
+
+    private <T extends Response> T route(Request request, Class<T> responseType) throws IOException {
+        List<NodeEndpoint> ranked = rank();
+        if (!hedgeEnabled || !READ_METHODS.contains(request.getMethod())) {
+            return ranked.get(0).send(request, responseType);
+        }
+        return hedge(ranked, node -> node.send(request, responseType));
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return send(request, responseType);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }, hedgeExecutor);
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        // 同一batch内是同类请求，整个batch占一个许可
+        String method = batchRequest.getRequests().isEmpty() ? null : batchRequest.getRequests().get(0).getMethod();
+        return admit(method, batchRequest.getRequests().size(), () -> routeBatch(batchRequest));
+    }
+
+    private BatchResponse routeBatch(BatchRequest batchRequest) throws IOException {
+        List<NodeEndpoint> ranked = rank();
+        boolean readOnly = true;
+        for (Request<?, ? extends Response<?>> request : batchRequest.getRequests()) {
+            if (!READ_METHODS.contains(request.getMethod())) {
+                readOnly = false;
+                break;
+            }
+        }
+        if (!hedgeEnabled || !readOnly) {
+            return ranked.get(0).sendBatch(batchRequest);
+        }
+        return hedge(ranked, node -> node.sendBatch(batchRequest));
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return sendBatch(batchRequest);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }, hedgeExecutor);
+    }
+
+    @Override
+    public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod, Class<T> responseType) {
+        throw new UnsupportedOperationException("subscriptions are not supported over http");
+    }
+
+    @Override
+    public void close() throws IOException {
+        hedgeExecutor.shutdownNow();
+        for (NodeEndpoint endpoint : endpoints) {
+            endpoint.close();
+        }
+    }
+
+    public List<NodeEndpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    private <T> T admit(String method, int size, RpcCall<T> call) throws IOException {
+        AdmissionLimiter limiter = method == null ? null : limiters.get(method);
+        if (limiter == null) {
+            return call.apply();
+        }
+        limiter.acquire();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T response = call.apply();
+            failed = false;
+            return response;
+        } finally {
+            limiter.release(System.nanoTime() - start, size, failed);
+        }
+    }
+
+    /**
+     * 健康节点按打分排序；全部被摘除时仍按打分使用所有节点
+     */
+    private List<NodeEndpoint> rank() {
+        if (endpoints.size() == 1) {
+            return endpoints;
+        }
+        List<NodeEndpoint> ranked = new ArrayList<>(endpoints.size());
+        for (NodeEndpoint endpoint : endpoints) {
+            if (endpoint.isHealthy()) {
+                ranked.add(endpoint);
+            }
+        }
+        if (ranked.isEmpty()) {
+            ranked.addAll(endpoints);
+        }
+        ranked.sort(Comparator.comparingDouble(NodeEndpoint::score));
+        return ranked;
+    }
+
+    private <T> T hedge(List<NodeEndpoint> ranked, NodeCall<T> call) throws IOException {
+        NodeEndpoint primary = ranked.get(0);
+        if (ranked.size() == 1) {
+            return call.apply(primary);
+        }
+        NodeEndpoint secondary = ranked.get(1);
+        CompletableFuture<T> first = submit(primary, call);
+        long delay = Math.max(hedgeMinDelay, primary.p95Millis());
+        try {
+            return first.get(delay, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 首个节点超过p95仍未返回，向第二个节点发出相同请求
+        } catch (ExecutionException e) {
+            // 首个节点已失败，直接改用第二个节点
+            return call.apply(secondary);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        CompletableFuture<T> second = submit(secondary, call);
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (CompletableFuture<T> future : Arrays.asList(first, second)) {
+            future.whenComplete((value, error) -> {
+                if (error == null) {
+                    winner.complete(value);
+                } else if (failures.incrementAndGet() == 2) {
+                    winner.completeExceptionally(error);
+                }
+            });
+        }
+        try {
+            return winner.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            while (cause != null && !(cause instanceof IOException) && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(NodeEndpoint node, NodeCall<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.apply(node);
+            } catch (IOException e) {
+                throw new RpcCallException(e);
+            }
+        }, hedgeExecutor);
+    }
+
+    private interface RpcCall<T> {
+        T apply() throws IOException;
+    }
+
+    private interface NodeCall<T> {
+        T apply(NodeEndpoint node) throws IOException;
+    }
+
+    private static class RpcCallException extends RuntimeException {
+        RpcCallException(IOException cause) {
+            super(cause);
+        }
+    }
+}
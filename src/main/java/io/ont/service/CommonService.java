@@ -1,11 +1,21 @@
 package io.ont.service;
 
 
+import io.ont.bean.BatchItem;
+import io.ont.bean.OwnershipSnapshot;
+import io.ont.bean.TxStatus;
+import io.ont.controller.vo.MintBatchReq;
 import io.ont.controller.vo.MintReq;
 import io.ont.controller.vo.NftReq;
 import io.ont.controller.vo.TransferReq;
 import io.ont.controller.vo.UserReq;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 
 public interface CommonService {
 
@@ -17,8 +27,28 @@ public interface CommonService {
 
     String burn(NftReq req);
 
+    CompletableFuture<String> mintAsync(MintReq req, boolean accept, String idempotencyKey);
+
+    CompletableFuture<String> transferAsync(TransferReq req, boolean accept, String idempotencyKey);
+
+    CompletableFuture<String> burnAsync(NftReq req, boolean accept, String idempotencyKey);
+
+    CompletableFuture<Map<String, BatchItem>> mintBatchAsync(MintBatchReq req);
+
+    TxStatus getTxStatus(String txHash);
+
     String getMetaData(String nftId);
 
     String getNftOwner(String nftId);
 
+    Map<String, BatchItem> getMetaDataBatch(List<String> nftIds);
+
+    Map<String, BatchItem> getNftOwnerBatch(List<String> nftIds);
+
+    List<String> getTokensOfOwner(String address);
+
+    CompletableFuture<OwnershipSnapshot> exportOwnersAsync();
+
+    void writeOwners(OwnershipSnapshot snapshot, OutputStream out) throws IOException;
+
 }
@@ -1,15 +1,37 @@
 package io.ont.service.impl;
 
-import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import io.micrometer.core.instrument.Counter;
+import io.ont.bean.BatchItem;
 import io.ont.bean.EvmAccount;
+import io.ont.bean.JournalEntry;
+import io.ont.bean.OwnershipSnapshot;
+import io.ont.bean.TxStatus;
+import io.ont.controller.vo.MintBatchReq;
 import io.ont.controller.vo.MintReq;
 import io.ont.controller.vo.NftReq;
 import io.ont.controller.vo.TransferReq;
 import io.ont.controller.vo.UserReq;
+import io.ont.exception.EvmBusyException;
 import io.ont.exception.EvmDemoException;
+import io.ont.exception.EvmParamException;
 import io.ont.service.CommonService;
+import io.ont.store.AccountStore;
+import io.ont.store.TxJournal;
+import io.ont.utils.BlockTracker;
 import io.ont.utils.ConfigParam;
 import io.ont.utils.Constant;
+import io.ont.utils.ContractCallCache;
+import io.ont.utils.CredentialsCache;
+import io.ont.utils.EvmMetrics;
+import io.ont.utils.IdempotencyTable;
+import io.ont.utils.NonceManager;
+import io.ont.utils.ReceiptResolver;
+import io.ont.utils.TransferBackfill;
+import io.ont.utils.TransferIndexer;
+import io.ont.utils.TxAudit;
+import io.ont.utils.TxLanes;
+import io.ont.utils.TxStatusTable;
 import io.ont.utils.Web3jSdkUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,28 +42,89 @@ import org.web3j.abi.datatypes.Type;
 import org.web3j.abi.datatypes.generated.Bytes32;
 import org.web3j.abi.datatypes.generated.Uint256;
 import org.web3j.crypto.Credentials;
-import org.web3j.crypto.RawTransaction;
-import org.web3j.crypto.TransactionEncoder;
-import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.protocol.core.methods.response.EthCall;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
 import org.web3j.protocol.core.methods.response.TransactionReceipt;
 import org.web3j.utils.Numeric;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 @Service
 @Slf4j
 public class CommonServiceImpl implements CommonService {
-    private Map<String, EvmAccount> userAccountMap = new ConcurrentHashMap<>();
+    private static final List<TypeReference<?>> BYTES32_OUTPUT = Collections.singletonList(new TypeReference<Bytes32>() {
+    });
+    private static final List<TypeReference<?>> ADDRESS_OUTPUT = Collections.singletonList(new TypeReference<Address>() {
+    });
 
     @Autowired
     private ConfigParam configParam;
     @Autowired
+    private AccountStore accountStore;
+    @Autowired
+    private CredentialsCache credentialsCache;
+    @Autowired
     private Web3jSdkUtil web3jSdkUtil;
+    @Autowired
+    private NonceManager nonceManager;
+    @Autowired
+    private ReceiptResolver receiptResolver;
+    @Autowired
+    private TxStatusTable txStatusTable;
+    @Autowired
+    private ContractCallCache contractCallCache;
+    @Autowired
+    private BlockTracker blockTracker;
+    @Autowired
+    private TransferIndexer transferIndexer;
+    @Autowired
+    private TransferBackfill transferBackfill;
+    @Autowired
+    private EvmMetrics evmMetrics;
+    @Autowired
+    private IdempotencyTable idempotencyTable;
+    @Autowired
+    private TxJournal txJournal;
+    @Autowired
+    private TxLanes txLanes;
+    @Autowired
+    private TxAudit txAudit;
+
+    private ExecutorService queryExecutor;
+
+    private Counter failedCounter;
+
+    @PostConstruct
+    public void init() {
+        queryExecutor = Executors.newFixedThreadPool(configParam.EVM_QUERY_PARALLELISM);
+        failedCounter = evmMetrics.counter("evm.tx.failed");
+        recoverTransactions();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        queryExecutor.shutdown();
+    }
 
     @Override
     public String bindAccount(UserReq req) {
@@ -52,7 +135,7 @@ public class CommonServiceImpl implements CommonService {
             account.setUserId(userId);
             publicKey = account.getPublicKey();
             // save in db
-            userAccountMap.put(publicKey, account);
+            accountStore.save(account);
         } catch (Exception e) {
             log.error("bindAccount error", e);
         }
@@ -61,87 +144,190 @@ public class CommonServiceImpl implements CommonService {
 
     @Override
     public String mint(MintReq req) {
+        return mintAsync(req, false, null).join();
+    }
+
+    @Override
+    public String transfer(TransferReq req) {
+        return transferAsync(req, false, null).join();
+    }
+
+    @Override
+    public String burn(NftReq req) {
+        return burnAsync(req, false, null).join();
+    }
+
+    @Override
+    public CompletableFuture<String> mintAsync(MintReq req, boolean accept, String idempotencyKey) {
         String publicKey = req.getPublicKey();
         String hash = req.getHash();
-        EvmAccount account = userAccountMap.get(publicKey);
-        if (account == null) {
+        // 获取用户地址&私钥
+        Credentials credentials = credentialsCache.get(publicKey);
+        if (credentials == null) {
             throw new EvmDemoException("user not bind evm account");
         }
-        // 获取用户地址&私钥
-        String address = account.getAddress();
-        String privateKey = account.getPrivateKey();
-        Credentials credentials = Credentials.create(privateKey);
-        try {
-            // 交易参数
-            byte[] bytes = Numeric.hexStringToByteArray(hash);
-            List<Type> params = Arrays.asList(new Bytes32(bytes));
+        if (!isBytes32(hash)) {
+            throw new EvmParamException("invalid hash: " + hash);
+        }
+        String address = credentials.getAddress();
+        // 交易参数
+        byte[] bytes = Numeric.hexStringToByteArray(hash);
+        List<Type> params = Arrays.asList(new Bytes32(bytes));
+        // 相同请求共用同一笔交易
+        IdempotencyTable.Key key = IdempotencyTable.key(Constant.MINT, publicKey, idempotencyKey, Numeric.cleanHexPrefix(hash));
+        IdempotencyTable.Submission submission = idempotencyTable.submit(key, () -> {
             // 构造交易，签名，发送
-            String txHash = makeAndSendTransaction(Constant.MINT, params, address, credentials);
+            CompletableFuture<String> txHashFuture = txLanes.submit(Constant.MINT, params, address, credentials);
             // 获取交易receipt
-            TransactionReceipt receipt = getReceipt(txHash);
-            // 解析receipt,获取nftId
-            String nftId = getNftIdFromReceipt(receipt);
-            return nftId;
-        } catch (Exception e) {
+            return new IdempotencyTable.Submission(txHashFuture, trackReceipt(txHashFuture, Constant.MINT, address));
+        });
+        // 解析receipt获取nftId
+        CompletableFuture<String> result = accept ? submission.getTxHash() : submission.getReceipt().thenApply(web3jSdkUtil::getNftIdFromReceipt);
+        return result.exceptionally(e -> {
+            rethrowBusy(e);
             log.error("mint nft error", e);
-        }
-        return null;
+            return null;
+        });
     }
 
     @Override
-    public String transfer(TransferReq req) {
+    public CompletableFuture<String> transferAsync(TransferReq req, boolean accept, String idempotencyKey) {
         String fromPublicKey = req.getFromPublicKey();
         String toPublicKey = req.getToPublicKey();
         String nftId = req.getNftId();
 
-        EvmAccount fromAccount = userAccountMap.get(fromPublicKey);
-        EvmAccount toAccount = userAccountMap.get(toPublicKey);
-        if (fromAccount == null || toAccount == null) {
+        // 获取用户地址&私钥
+        Credentials credentials = credentialsCache.get(fromPublicKey);
+        String toAddress = accountStore.getAddress(toPublicKey);
+        if (credentials == null || toAddress == null) {
             throw new EvmDemoException("user not bind evm account");
         }
-        // 获取用户地址&私钥
-        String address = fromAccount.getAddress();
-        String privateKey = fromAccount.getPrivateKey();
-        Credentials credentials = Credentials.create(privateKey);
-        String toAddress = toAccount.getAddress();
-        try {
-            // 交易参数
-            List<Type> params = Arrays.asList(new Address(toAddress), new Uint256(new BigInteger(nftId)));
+        String address = credentials.getAddress();
+        // 交易参数
+        List<Type> params = Arrays.asList(new Address(toAddress), new Uint256(new BigInteger(nftId)));
+        // 相同请求共用同一笔交易
+        IdempotencyTable.Key key = IdempotencyTable.key(Constant.TRANSFER, fromPublicKey, idempotencyKey, toAddress, nftId);
+        IdempotencyTable.Submission submission = idempotencyTable.submit(key, () -> {
+            // 落账并被索引之前，该token的归属查询走合约
+            transferIndexer.beginWrite(nftId);
             // 构造交易，签名，发送
-            String txHash = makeAndSendTransaction(Constant.TRANSFER, params, address, credentials);
+            CompletableFuture<String> txHashFuture;
+            try {
+                txHashFuture = txLanes.submit(Constant.TRANSFER, params, address, credentials);
+            } catch (RuntimeException e) {
+                // 交易未进入通道
+                transferIndexer.endWrite(nftId, null);
+                throw e;
+            }
             // 获取交易receipt，确保交易成功落账
-            boolean transactionSuccess = checkTransactionStatus(txHash);
-            return transactionSuccess ? txHash : null;
-        } catch (Exception e) {
+            CompletableFuture<TransactionReceipt> receiptFuture = trackReceipt(txHashFuture, Constant.TRANSFER, address);
+            receiptFuture.whenComplete((receipt, e) -> onOwnerWritten(nftId, receipt));
+            return new IdempotencyTable.Submission(txHashFuture, receiptFuture);
+        });
+        CompletableFuture<String> result = accept ? submission.getTxHash() : submission.getReceipt().thenApply(this::getTxHashIfSuccess);
+        return result.exceptionally(e -> {
+            rethrowBusy(e);
             log.error("transfer nft error", e);
-        }
-        return null;
+            return null;
+        });
     }
 
     @Override
-    public String burn(NftReq req) {
+    public CompletableFuture<String> burnAsync(NftReq req, boolean accept, String idempotencyKey) {
         String publicKey = req.getPublicKey();
         String nftId = req.getNftId();
-        EvmAccount account = userAccountMap.get(publicKey);
-        if (account == null) {
+        // 获取用户地址&私钥
+        Credentials credentials = credentialsCache.get(publicKey);
+        if (credentials == null) {
             throw new EvmDemoException("user not bind evm account");
         }
-        // 获取用户地址&私钥
-        String address = account.getAddress();
-        String privateKey = account.getPrivateKey();
-        Credentials credentials = Credentials.create(privateKey);
-        try {
-            // 交易参数
-            List<Type> params = Arrays.asList(new Uint256(new BigInteger(nftId)));
+        String address = credentials.getAddress();
+        // 交易参数
+        List<Type> params = Arrays.asList(new Uint256(new BigInteger(nftId)));
+        // 相同请求共用同一笔交易
+        IdempotencyTable.Key key = IdempotencyTable.key(Constant.BURN, publicKey, idempotencyKey, nftId);
+        IdempotencyTable.Submission submission = idempotencyTable.submit(key, () -> {
+            // 落账并被索引之前，该token的归属查询走合约
+            transferIndexer.beginWrite(nftId);
             // 构造交易，签名，发送
-            String txHash = makeAndSendTransaction(Constant.BURN, params, address, credentials);
+            CompletableFuture<String> txHashFuture;
+            try {
+                txHashFuture = txLanes.submit(Constant.BURN, params, address, credentials);
+            } catch (RuntimeException e) {
+                // 交易未进入通道
+                transferIndexer.endWrite(nftId, null);
+                throw e;
+            }
             // 获取交易receipt，确保交易成功落账
-            boolean transactionSuccess = checkTransactionStatus(txHash);
-            return transactionSuccess ? txHash : null;
-        } catch (Exception e) {
+            CompletableFuture<TransactionReceipt> receiptFuture = trackReceipt(txHashFuture, Constant.BURN, address);
+            receiptFuture.whenComplete((receipt, e) -> onOwnerWritten(nftId, receipt));
+            return new IdempotencyTable.Submission(txHashFuture, receiptFuture);
+        });
+        CompletableFuture<String> result = accept ? submission.getTxHash() : submission.getReceipt().thenApply(this::getTxHashIfSuccess);
+        return result.exceptionally(e -> {
+            rethrowBusy(e);
             log.error("burned nft error", e);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Map<String, BatchItem>> mintBatchAsync(MintBatchReq req) {
+        String publicKey = req.getPublicKey();
+        // 获取用户地址&私钥
+        Credentials credentials = credentialsCache.get(publicKey);
+        if (credentials == null) {
+            throw new EvmDemoException("user not bind evm account");
         }
-        return null;
+        String address = credentials.getAddress();
+        if (req.getHashes() == null || req.getHashes().isEmpty()) {
+            throw new EvmParamException("hashes is empty");
+        }
+        for (String hash : req.getHashes()) {
+            if (!isBytes32(hash)) {
+                throw new EvmParamException("invalid hash: " + hash);
+            }
+        }
+        List<String> hashes = new ArrayList<>(new LinkedHashSet<>(req.getHashes()));
+        List<List<Type>> paramsList = new ArrayList<>(hashes.size());
+        for (String hash : hashes) {
+            paramsList.add(Arrays.asList(new Bytes32(Numeric.hexStringToByteArray(hash))));
+        }
+        // 同一通道内分配连续nonce，并行签名，分批发送
+        List<CompletableFuture<String>> txHashFutures = txLanes.submitBatch(Constant.MINT, paramsList, address, credentials);
+        // 统一等待所有交易落账，解析nftId
+        Map<String, CompletableFuture<BatchItem>> itemFutures = new LinkedHashMap<>();
+        for (int i = 0; i < hashes.size(); i++) {
+            itemFutures.put(hashes.get(i), txHashFutures.get(i).handle((txHash, e) -> {
+                if (e != null) {
+                    return CompletableFuture.completedFuture(BatchItem.error(e.getCause() != null ? e.getCause().getMessage() : e.getMessage()));
+                }
+                txStatusTable.pending(txHash, Constant.MINT);
+                long pendingNanos = System.nanoTime();
+                return receiptResolver.resolve(txHash)
+                        .thenApply(receipt -> onReceipt(txHash, Constant.MINT, address, receipt, pendingNanos))
+                        .thenApply(this::toMintItem);
+            }).thenCompose(future -> future));
+        }
+        return CompletableFuture.allOf(itemFutures.values().toArray(new CompletableFuture[0])).thenApply(v -> {
+            Map<String, BatchItem> resultMap = new LinkedHashMap<>();
+            for (Map.Entry<String, CompletableFuture<BatchItem>> entry : itemFutures.entrySet()) {
+                resultMap.put(entry.getKey(), entry.getValue().join());
+            }
+            return resultMap;
+        }).exceptionally(e -> {
+            log.error("mint batch error", e);
+            Map<String, BatchItem> errorMap = new LinkedHashMap<>();
+            for (String hash : hashes) {
+                errorMap.put(hash, BatchItem.error(e.getMessage()));
+            }
+            return errorMap;
+        });
+    }
+
+    @Override
+    public TxStatus getTxStatus(String txHash) {
+        return txStatusTable.get(txHash);
     }
 
     @Override
@@ -150,13 +336,11 @@ public class CommonServiceImpl implements CommonService {
         try {
             // 交易参数
             List<Type> params = Arrays.asList(new Uint256(new BigInteger(nftId)));
-            TypeReference<Bytes32> reserve = new TypeReference<Bytes32>() {
-            };
-            List<TypeReference<?>> outputParameters = Arrays.asList(reserve);
-            List<Type> result = web3jSdkUtil.sendPreTransactionAndDecode(configParam.NFT_CONTRACT, Constant.GET_META_DATA, Constant.ETH_PRE_ADDRESS, params, outputParameters);
+            List<Type> result = contractCallCache.call(configParam.NFT_CONTRACT, Constant.GET_META_DATA, params, BYTES32_OUTPUT, true);
             byte[] value = ((Bytes32) result.get(0)).getValue();
             hash = Numeric.toHexStringNoPrefix(value);
         } catch (Exception e) {
+            rethrowBusy(e);
             log.error("get nft meta data error", e);
         }
         return hash;
@@ -164,76 +348,377 @@ public class CommonServiceImpl implements CommonService {
 
     @Override
     public String getNftOwner(String nftId) {
+        if (transferIndexer.isSynced() && transferIndexer.isIndexed(nftId)) {
+            // 本地Transfer事件索引已追上链上高度，直接返回
+            return transferIndexer.getOwner(nftId);
+        }
         String owner = null;
         try {
             // 交易参数
             List<Type> params = Arrays.asList(new Uint256(new BigInteger(nftId)));
-            TypeReference<Address> reserve = new TypeReference<Address>() {
-            };
-            List<TypeReference<?>> outputParameters = Arrays.asList(reserve);
-            List<Type> result = web3jSdkUtil.sendPreTransactionAndDecode(configParam.NFT_CONTRACT, Constant.OWNER_OF, Constant.ETH_PRE_ADDRESS, params, outputParameters);
+            List<Type> result = contractCallCache.call(configParam.NFT_CONTRACT, Constant.OWNER_OF, params, ADDRESS_OUTPUT, false);
             owner = result.get(0).getValue().toString();
         } catch (Exception e) {
+            rethrowBusy(e);
             log.error("get nft meta data error", e);
         }
         return owner;
     }
 
-    private String makeAndSendTransaction(String function, List<Type> params, String address, Credentials credentials) throws Exception {
-        // 构造交易
-        RawTransaction transaction = web3jSdkUtil.createEvmTransaction(configParam.NFT_CONTRACT, function, address, params);
-        // 签名交易
-        byte[] signedMessage = TransactionEncoder.signMessage(transaction, configParam.EVM_CHAIN_ID, credentials);
-        String txHex = Numeric.toHexString(signedMessage);
-        // 发送交易上链
-        String txHash = web3jSdkUtil.sendEvmTransaction(txHex);
-        return txHash;
-    }
-
-    private boolean checkTransactionStatus(String txHash) throws Exception {
-        boolean success = false;
-        TransactionReceipt receipt = getReceipt(txHash);
-        String status = receipt.getStatus();
-        if (Constant.STATUS_SUCCESS.equals(status)) {
-            success = true;
-        }
-        return success;
-    }
-
-    private TransactionReceipt getReceipt(String txHash) throws Exception {
-        TransactionReceipt receipt = null;
-        int times = 0;
-        while (times < 20) {
-            receipt = web3jSdkUtil.getReceiptByHash(txHash);
-            if (receipt == null) {
-                // 交易在链上未落账,等待一会后再查
-                times++;
-                Thread.sleep(1000);
+    @Override
+    public Map<String, BatchItem> getMetaDataBatch(List<String> nftIds) {
+        return batchQuery(nftIds, Constant.GET_META_DATA, BYTES32_OUTPUT, true, value -> Numeric.toHexStringNoPrefix(((Bytes32) value).getValue()));
+    }
+
+    @Override
+    public Map<String, BatchItem> getNftOwnerBatch(List<String> nftIds) {
+        if (!transferIndexer.isSynced()) {
+            return batchQuery(nftIds, Constant.OWNER_OF, ADDRESS_OUTPUT, false, value -> value.getValue().toString());
+        }
+        // 本服务有未被索引的交易的token查询合约，其余直接取本地索引
+        Map<String, BatchItem> ownerMap = new LinkedHashMap<>();
+        List<String> queryIds = new ArrayList<>();
+        for (String nftId : nftIds) {
+            if (transferIndexer.isIndexed(nftId)) {
+                String owner = transferIndexer.getOwner(nftId);
+                ownerMap.put(nftId, owner == null ? BatchItem.error("nft not exist") : BatchItem.value(owner));
+            } else {
+                ownerMap.put(nftId, null);
+                queryIds.add(nftId);
+            }
+        }
+        if (!queryIds.isEmpty()) {
+            ownerMap.putAll(batchQuery(queryIds, Constant.OWNER_OF, ADDRESS_OUTPUT, false, value -> value.getValue().toString()));
+        }
+        return ownerMap;
+    }
+
+    @Override
+    public List<String> getTokensOfOwner(String address) {
+        if (!transferIndexer.isSynced()) {
+            throw new EvmDemoException("transfer index not synced");
+        }
+        return transferIndexer.getTokens(address);
+    }
+
+    /**
+     * 本地索引已同步时以索引为基础，只回填检查点之后的区块；否则从evm.indexer.start.block全量回填
+     */
+    @Override
+    public CompletableFuture<OwnershipSnapshot> exportOwnersAsync() {
+        if (!transferIndexer.isSynced()) {
+            return transferBackfill.backfill(configParam.EVM_INDEXER_START_BLOCK);
+        }
+        // 检查点之后有变化的token都在回填结果中，其余token在检查点到最新区块之间归属不变
+        return transferBackfill.backfill(transferIndexer.getCheckpoint() + 1).thenApply(snapshot -> {
+            snapshot.setOwners(transferIndexer.getOwners());
+            return snapshot;
+        });
+    }
+
+    /**
+     * 边遍历归属边写出，每次查询batch.size*parallelism个token的元数据hash，写出后立即flush；
+     * 响应本身只占用一组token，归属来自本地索引时只额外持有检查点之后有变化的token
+     */
+    @Override
+    public void writeOwners(OwnershipSnapshot snapshot, OutputStream out) throws IOException {
+        int groupSize = configParam.EVM_QUERY_BATCH_SIZE * configParam.EVM_QUERY_PARALLELISM;
+        Map<String, String> changes = snapshot.getChanges();
+        Map<String, String> group = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : snapshot.getOwners().entrySet()) {
+            if (!changes.containsKey(entry.getKey())) {
+                addOwner(group, groupSize, entry.getKey(), entry.getValue(), out);
+            }
+        }
+        for (Map.Entry<String, String> entry : changes.entrySet()) {
+            // 已销毁的token不输出
+            if (entry.getValue() != null) {
+                addOwner(group, groupSize, entry.getKey(), entry.getValue(), out);
+            }
+        }
+        if (!group.isEmpty()) {
+            writeOwnerGroup(group, out);
+        }
+    }
+
+    private void addOwner(Map<String, String> group, int groupSize, String nftId, String owner, OutputStream out) throws IOException {
+        group.put(nftId, owner);
+        if (group.size() >= groupSize) {
+            writeOwnerGroup(group, out);
+            group.clear();
+        }
+    }
+
+    private void writeOwnerGroup(Map<String, String> owners, OutputStream out) throws IOException {
+        Map<String, BatchItem> hashMap = getMetaDataBatch(new ArrayList<>(owners.keySet()));
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, String> entry : owners.entrySet()) {
+            String nftId = entry.getKey();
+            BatchItem hash = hashMap.get(nftId);
+            JSONObject line = new JSONObject(true);
+            line.put("nftId", nftId);
+            line.put("owner", entry.getValue());
+            if (hash != null) {
+                line.put("hash", hash.getValue());
+                line.put("error", hash.getError());
+            }
+            builder.append(line.toJSONString()).append('\n');
+        }
+        out.write(builder.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * 按nftId分块，每块一次batch eth_call，多块并发查询；单个id的错误只记录在该id上
+     */
+    private Map<String, BatchItem> batchQuery(List<String> nftIds, String function, List<TypeReference<?>> outputParameters, boolean immutable, java.util.function.Function<Type, String> formatter) {
+        Map<String, BatchItem> resultMap = new LinkedHashMap<>();
+        List<String> validIds = new ArrayList<>();
+        for (String nftId : nftIds) {
+            if (resultMap.containsKey(nftId)) {
                 continue;
             }
-            log.info("receipt:{}", JSON.toJSONString(receipt));
-            break;
+            BigInteger id;
+            try {
+                id = new BigInteger(nftId);
+            } catch (Exception e) {
+                resultMap.put(nftId, BatchItem.error("invalid nftId"));
+                continue;
+            }
+            // 命中缓存的id不再查询
+            List<Type> cached = contractCallCache.get(configParam.NFT_CONTRACT, function, Arrays.asList(new Uint256(id)), immutable);
+            if (cached != null) {
+                resultMap.put(nftId, BatchItem.value(formatter.apply(cached.get(0))));
+            } else {
+                resultMap.put(nftId, null);
+                validIds.add(nftId);
+            }
         }
+        int batchSize = configParam.EVM_QUERY_BATCH_SIZE;
+        List<CompletableFuture<Map<String, BatchItem>>> futures = new ArrayList<>();
+        for (int from = 0; from < validIds.size(); from += batchSize) {
+            List<String> chunk = validIds.subList(from, Math.min(from + batchSize, validIds.size()));
+            futures.add(CompletableFuture.supplyAsync(() -> queryChunk(chunk, function, outputParameters, immutable, formatter), queryExecutor));
+        }
+        for (CompletableFuture<Map<String, BatchItem>> future : futures) {
+            try {
+                resultMap.putAll(future.join());
+            } catch (CompletionException e) {
+                rethrowBusy(e);
+                throw e;
+            }
+        }
+        return resultMap;
+    }
+
+    private Map<String, BatchItem> queryChunk(List<String> nftIds, String function, List<TypeReference<?>> outputParameters, boolean immutable, java.util.function.Function<Type, String> formatter) {
+        Map<String, BatchItem> chunkMap = new HashMap<>();
+        List<List<Type>> paramsList = new ArrayList<>(nftIds.size());
+        for (String nftId : nftIds) {
+            paramsList.add(Arrays.asList(new Uint256(new BigInteger(nftId))));
+        }
+        long blockNumber = blockTracker.getLatestBlock();
+        List<EthCall> ethCalls;
+        try {
+            ethCalls = web3jSdkUtil.sendPreTransactions(configParam.NFT_CONTRACT, function, Constant.ETH_PRE_ADDRESS, paramsList);
+        } catch (Exception e) {
+            rethrowBusy(e);
+            log.error("batch query {} error", function, e);
+            for (String nftId : nftIds) {
+                chunkMap.put(nftId, BatchItem.error(e.getMessage()));
+            }
+            return chunkMap;
+        }
+        for (int i = 0; i < nftIds.size(); i++) {
+            String nftId = nftIds.get(i);
+            EthCall ethCall = ethCalls.get(i);
+            if (ethCall == null) {
+                chunkMap.put(nftId, BatchItem.error("no response"));
+            } else if (ethCall.getError() != null) {
+                chunkMap.put(nftId, BatchItem.error(ethCall.getError().getMessage()));
+            } else {
+                List<Type> result = web3jSdkUtil.decodeFunctionResult(function, ethCall.getValue(), outputParameters);
+                if (result.isEmpty()) {
+                    chunkMap.put(nftId, BatchItem.error("empty result"));
+                } else {
+                    contractCallCache.put(configParam.NFT_CONTRACT, function, paramsList.get(i), result, immutable, blockNumber);
+                    chunkMap.put(nftId, BatchItem.value(formatter.apply(result.get(0))));
+                }
+            }
+        }
+        return chunkMap;
+    }
+
+    private BatchItem toMintItem(TransactionReceipt receipt) {
+        if (receipt == null) {
+            return BatchItem.error("receipt timeout");
+        }
+        if (!Constant.STATUS_SUCCESS.equals(receipt.getStatus())) {
+            return BatchItem.error("transaction failed");
+        }
+        return BatchItem.value(web3jSdkUtil.getNftIdFromReceipt(receipt));
+    }
+
+    private CompletableFuture<TransactionReceipt> trackReceipt(CompletableFuture<String> txHashFuture, String function, String address) {
+        return txHashFuture.thenCompose(txHash -> {
+            txStatusTable.pending(txHash, function);
+            long pendingNanos = System.nanoTime();
+            return receiptResolver.resolve(txHash).thenApply(receipt -> onReceipt(txHash, function, address, receipt, pendingNanos));
+        });
+    }
+
+    private TransactionReceipt onReceipt(String txHash, String function, String address, TransactionReceipt receipt, long pendingNanos) {
+        txAudit.receipt(txHash, function, receipt, pendingNanos);
+        if (receipt == null) {
+            // 交易可能被节点丢弃，后续交易需重新同步nonce
+            nonceManager.resync(address);
+            // 超时不代表失败，交易仍可能落账：日志保持未完结，继续低频轮询收据
+            txStatusTable.update(txHash, function, Constant.TX_TIMEOUT, null);
+            receiptResolver.watch(txHash).thenAccept(late -> onLateReceipt(txHash, function, late, pendingNanos));
+            return null;
+        }
+        resolved(txHash, function, receipt);
         return receipt;
     }
 
-    private String getNftIdFromReceipt(TransactionReceipt receipt) throws Exception {
-        String nftId = null;
-        if (receipt != null) {
-            List<Log> logs = receipt.getLogs();
-            for (Log txLog : logs) {
-                String address = txLog.getAddress();
-                if (configParam.NFT_CONTRACT.equalsIgnoreCase(address)) {
-                    List<String> topics = txLog.getTopics();
-                    String eventHash = topics.get(0);
-                    if (Constant.TRANSFER_EVENT_HASH.equals(eventHash)) {
-                        String value = topics.get(3);
-                        BigInteger id = Numeric.toBigInt(value);
-                        nftId = id.toString();
+    private void onLateReceipt(String txHash, String function, TransactionReceipt receipt, long pendingNanos) {
+        if (receipt == null) {
+            // 低频轮询也已超时，按被丢弃处理，不再重新广播
+            log.warn("receipt still missing, transaction dropped, hash:{}", txHash);
+            dropped(txHash, function);
+            return;
+        }
+        txAudit.receipt(txHash, function, receipt, pendingNanos);
+        resolved(txHash, function, receipt);
+    }
+
+    /**
+     * 交易被节点丢弃或同一nonce已被其他交易占用，不会再落账
+     */
+    private void dropped(String txHash, String function) {
+        txStatusTable.update(txHash, function, Constant.TX_DROPPED, null);
+        txJournal.resolved(txHash, Constant.TX_DROPPED, null);
+    }
+
+    private void resolved(String txHash, String function, TransactionReceipt receipt) {
+        if (Constant.STATUS_SUCCESS.equals(receipt.getStatus())) {
+            String nftId = Constant.MINT.equals(function) ? web3jSdkUtil.getNftIdFromReceipt(receipt) : null;
+            if (nftId != null) {
+                transferIndexer.endWrite(nftId, receipt.getBlockNumber().longValue());
+            }
+            txStatusTable.update(txHash, function, Constant.TX_SUCCESS, nftId);
+            txJournal.resolved(txHash, Constant.TX_SUCCESS, nftId);
+        } else {
+            failedCounter.increment();
+            txStatusTable.update(txHash, function, Constant.TX_FAILED, null);
+            txJournal.resolved(txHash, Constant.TX_FAILED, null);
+        }
+    }
+
+    /**
+     * 启动时从交易日志恢复：已完结的交易重建状态表；未完结的交易重新广播并继续等待收据
+     */
+    private void recoverTransactions() {
+        List<JournalEntry> unresolved = new ArrayList<>();
+        for (JournalEntry entry : txJournal.takeRecovered()) {
+            if (entry.getStatus() == null) {
+                unresolved.add(entry);
+                txStatusTable.pending(entry.getTxHash(), entry.getFunction());
+            } else {
+                txStatusTable.update(entry.getTxHash(), entry.getFunction(), entry.getStatus(), entry.getNftId());
+            }
+        }
+        if (unresolved.isEmpty()) {
+            return;
+        }
+        log.info("recover unresolved transactions from journal, size:{}", unresolved.size());
+        // 节点已有的交易返回already known，继续等待收据；nonce too low说明该nonce已落账，可能是本交易也可能是其他交易
+        Set<String> nonceUsed = new HashSet<>();
+        int batchSize = configParam.EVM_TX_BATCH_SIZE;
+        for (int from = 0; from < unresolved.size(); from += batchSize) {
+            List<JournalEntry> entries = unresolved.subList(from, Math.min(from + batchSize, unresolved.size()));
+            List<String> txHexes = new ArrayList<>();
+            for (JournalEntry entry : entries) {
+                txHexes.add(entry.getTxHex());
+            }
+            try {
+                List<EthSendTransaction> sends = web3jSdkUtil.sendEvmTransactions(txHexes);
+                for (int i = 0; i < entries.size(); i++) {
+                    EthSendTransaction send = sends.get(i);
+                    if (send != null && send.getError() != null && send.getError().getMessage() != null
+                            && send.getError().getMessage().toLowerCase().contains(Constant.NONCE_TOO_LOW)) {
+                        nonceUsed.add(entries.get(i).getTxHash());
                     }
                 }
+            } catch (Exception e) {
+                log.error("rebroadcast journal transactions error", e);
             }
         }
-        return nftId;
+        long pendingNanos = System.nanoTime();
+        for (JournalEntry entry : unresolved) {
+            String txHash = entry.getTxHash();
+            if (nonceUsed.contains(txHash)) {
+                // 查不到收据说明nonce被其他交易占用，不会再落账
+                receiptResolver.resolve(txHash).thenAccept(receipt -> {
+                    if (receipt == null) {
+                        txAudit.receipt(txHash, entry.getFunction(), null, pendingNanos);
+                        log.warn("rebroadcast nonce too low and no receipt, transaction dropped, hash:{}", txHash);
+                        dropped(txHash, entry.getFunction());
+                    } else {
+                        onReceipt(txHash, entry.getFunction(), entry.getAddress(), receipt, pendingNanos);
+                    }
+                });
+            } else {
+                receiptResolver.resolve(txHash)
+                        .thenAccept(receipt -> onReceipt(txHash, entry.getFunction(), entry.getAddress(), receipt, pendingNanos));
+            }
+        }
+    }
+
+    /**
+     * 超过节点准入限制的错误不按业务错误处理，交给controller返回繁忙
+     */
+    private static void rethrowBusy(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof EvmBusyException) {
+                throw (EvmBusyException) cause;
+            }
+        }
+    }
+
+    /**
+     * 合约的hash参数是bytes32，必须是32字节的hex，可带0x前缀
+     */
+    private static boolean isBytes32(String hash) {
+        if (hash == null) {
+            return false;
+        }
+        String hex = Numeric.cleanHexPrefix(hash);
+        if (hex.length() != 64) {
+            return false;
+        }
+        for (int i = 0; i < hex.length(); i++) {
+            if (Character.digit(hex.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void invalidateOwner(String nftId) {
+        List<Type> params = Arrays.asList(new Uint256(new BigInteger(nftId)));
+        contractCallCache.invalidate(configParam.NFT_CONTRACT, Constant.OWNER_OF, params);
+    }
+
+    private void onOwnerWritten(String nftId, TransactionReceipt receipt) {
+        invalidateOwner(nftId);
+        transferIndexer.endWrite(nftId, receipt == null ? null : receipt.getBlockNumber().longValue());
+    }
+
+    private String getTxHashIfSuccess(TransactionReceipt receipt) {
+        if (receipt != null && Constant.STATUS_SUCCESS.equals(receipt.getStatus())) {
+            return receipt.getTransactionHash();
+        }
+        return null;
     }
 }
@@ -0,0 +1,27 @@
+package io.ont.store;
+
+import io.ont.bean.EvmAccount;
+import org.web3j.crypto.Credentials;
+
+
+public interface AccountStore {
+
+    void save(EvmAccount account);
+
+    EvmAccount getByPublicKey(String publicKey);
+
+    EvmAccount getByUserId(String userId);
+
+    /**
+     * 交易路径上使用，只返回账户地址，未绑定返回null
+     */
+    String getAddress(String publicKey);
+
+    /**
+     * 交易路径上使用，返回可直接签名的Credentials，未绑定返回null
+     */
+    Credentials getCredentials(String publicKey);
+
+    long size();
+
+}
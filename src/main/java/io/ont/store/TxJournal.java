@@ -0,0 +1,405 @@
+package io.ont.store;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.ont.bean.JournalEntry;
+import io.ont.utils.ConfigParam;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+
+/**
+ * 交易日志：发送前记录已签名的交易，拿到收据后记录最终状态，重启时据此恢复未完结的交易。
+ * tx-N.log 为追加写的分段文件，每条记录以4字节长度开头，以4字节CRC结尾；
+ * 写入由单个线程攒批，一批记录只做一次write和force(组提交)；
+ * 分段超过evm.journal.segment.size时滚动，新分段先写入所有未完结交易和状态表TTL内完结的交易，再删除旧分段
+ */
+@Slf4j
+@Component
+public class TxJournal {
+    private static final byte SENT = 1;
+    private static final byte RESOLVED = 2;
+    private static final String SEGMENT_PREFIX = "tx-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int MAX_BATCH = 4096;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    @Autowired
+    private ConfigParam configParam;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final BlockingQueue<JournalWrite> writeQueue = new LinkedBlockingQueue<>();
+    private final Map<String, JournalEntry> unresolvedMap = new ConcurrentHashMap<>();
+    /**
+     * 已完结的交易(不含txHex)，滚动时写入新分段，过了状态表TTL的丢弃
+     */
+    private final Map<String, JournalEntry> resolvedMap = new ConcurrentHashMap<>();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private List<JournalEntry> recovered = Collections.emptyList();
+
+    private File dir;
+    private long segmentNo;
+    private FileChannel channel;
+    private Thread writer;
+    private volatile boolean running;
+    private Timer commitTimer;
+    private DistributionSummary batchSummary;
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!configParam.EVM_JOURNAL_ENABLED) {
+            return;
+        }
+        dir = new File(configParam.EVM_JOURNAL_DIR);
+        dir.mkdirs();
+        List<Long> segments = listSegments();
+        Map<String, JournalEntry> entryMap = new LinkedHashMap<>();
+        for (long no : segments) {
+            read(no, entryMap);
+        }
+        // 只保留未完结的交易和状态表TTL内完结的交易
+        long expireTime = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(configParam.EVM_TX_STATUS_TTL);
+        List<JournalEntry> kept = new ArrayList<>();
+        for (JournalEntry entry : entryMap.values()) {
+            if (entry.getStatus() == null && entry.getTxHex() != null) {
+                unresolvedMap.put(entry.getTxHash(), entry);
+                kept.add(entry);
+            } else if (entry.getStatus() != null && entry.getTime() >= expireTime) {
+                entry.setTxHex(null);
+                resolvedMap.put(entry.getTxHash(), entry);
+                kept.add(entry);
+            }
+        }
+        segmentNo = segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1;
+        openSegment(kept);
+        recovered = kept;
+
+        commitTimer = Timer.builder("evm.journal.commit").publishPercentileHistogram().register(meterRegistry);
+        batchSummary = meterRegistry.summary("evm.journal.batch");
+        meterRegistry.gauge("evm.journal.unresolved", unresolvedMap, Map::size);
+        running = true;
+        writer = new Thread(this::writeLoop, "tx-journal");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("tx journal opened, segment:{}, unresolved:{}, resolved:{}", segmentNo, unresolvedMap.size(), kept.size() - unresolvedMap.size());
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        channel.close();
+    }
+
+    /**
+     * 记录待发送的已签名交易，future完成时记录已落盘
+     * @param entries
+     * @return
+     */
+    public CompletableFuture<Void> sent(List<JournalEntry> entries) {
+        if (writer == null || entries.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        for (int i = 0; i < entries.size(); i++) {
+            JournalEntry entry = entries.get(i);
+            unresolvedMap.put(entry.getTxHash(), entry);
+            // 单线程按顺序落盘，最后一条完成即全部完成
+            writeQueue.add(new JournalWrite(SENT, entry, i == entries.size() - 1 ? future : null));
+        }
+        return future;
+    }
+
+    /**
+     * 记录交易最终状态，不等待落盘
+     * @param txHash
+     * @param status
+     * @param nftId
+     */
+    public void resolved(String txHash, String status, String nftId) {
+        JournalEntry sent = unresolvedMap.get(txHash);
+        if (writer == null || sent == null) {
+            return;
+        }
+        JournalEntry entry = new JournalEntry();
+        entry.setTxHash(txHash);
+        entry.setStatus(status);
+        entry.setNftId(nftId);
+        entry.setTime(System.currentTimeMillis());
+        // 先加入已完结再移出未完结，滚动时不会两边都漏掉
+        JournalEntry kept = new JournalEntry();
+        kept.setTxHash(txHash);
+        kept.setFunction(sent.getFunction());
+        kept.setAddress(sent.getAddress());
+        kept.setStatus(status);
+        kept.setNftId(nftId);
+        kept.setTime(entry.getTime());
+        resolvedMap.put(txHash, kept);
+        if (unresolvedMap.remove(txHash) == null) {
+            return;
+        }
+        writeQueue.add(new JournalWrite(RESOLVED, entry, null));
+    }
+
+    /**
+     * 启动时从日志恢复的交易(未完结的status为null)，只能取一次
+     * @return
+     */
+    public synchronized List<JournalEntry> takeRecovered() {
+        List<JournalEntry> entries = recovered;
+        recovered = Collections.emptyList();
+        return entries;
+    }
+
+    private void writeLoop() {
+        List<JournalWrite> batch = new ArrayList<>();
+        while (running || !writeQueue.isEmpty()) {
+            try {
+                JournalWrite first = writeQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                writeQueue.drainTo(batch, MAX_BATCH - 1);
+                long start = System.nanoTime();
+                for (JournalWrite write : batch) {
+                    append(write.type, write.entry);
+                }
+                flush();
+                channel.force(false);
+                commitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                batchSummary.record(batch.size());
+                for (JournalWrite write : batch) {
+                    if (write.future != null) {
+                        write.future.complete(null);
+                    }
+                }
+                if (channel.size() >= configParam.EVM_JOURNAL_SEGMENT_SIZE) {
+                    rotate();
+                }
+            } catch (Throwable e) {
+                log.error("tx journal write error, batch:{}", batch.size(), e);
+                for (JournalWrite write : batch) {
+                    if (write.future != null) {
+                        write.future.completeExceptionally(e);
+                    }
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void rotate() throws IOException {
+        long expireTime = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(configParam.EVM_TX_STATUS_TTL);
+        resolvedMap.values().removeIf(entry -> entry.getTime() < expireTime);
+        // 同一交易两边都有时，读取时后写的已完结记录覆盖未完结记录
+        List<JournalEntry> entries = new ArrayList<>(unresolvedMap.values());
+        entries.addAll(resolvedMap.values());
+        FileChannel old = channel;
+        segmentNo++;
+        openSegment(entries);
+        old.close();
+        log.info("tx journal rotated, segment:{}, unresolved:{}, resolved:{}", segmentNo, unresolvedMap.size(), resolvedMap.size());
+    }
+
+    /**
+     * 新建分段并写入需要保留的交易，落盘后删除旧分段
+     */
+    private void openSegment(Collection<JournalEntry> entries) throws IOException {
+        File file = segmentFile(segmentNo);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        for (JournalEntry entry : entries) {
+            append(SENT, entry);
+        }
+        flush();
+        channel.force(true);
+        try (FileChannel dirChannel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            dirChannel.force(true);
+        } catch (IOException e) {
+            log.debug("fsync journal dir not supported:{}", e.getMessage());
+        }
+        for (long no : listSegments()) {
+            if (no < segmentNo && !segmentFile(no).delete()) {
+                log.warn("delete journal segment failed:{}", segmentFile(no));
+            }
+        }
+    }
+
+    private void read(long no, Map<String, JournalEntry> entryMap) throws IOException {
+        File file = segmentFile(no);
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        while (data.remaining() >= 4) {
+            int length = data.getInt();
+            if (length <= 0 || length + 4 > data.remaining()) {
+                break;
+            }
+            crc.reset();
+            crc.update(data.array(), data.position(), length);
+            if ((int) crc.getValue() != data.getInt(data.position() + length)) {
+                break;
+            }
+            byte type = data.get();
+            JournalEntry entry = new JournalEntry();
+            entry.setTime(data.getLong());
+            entry.setTxHash(getString(data));
+            entry.setFunction(getString(data));
+            entry.setAddress(getString(data));
+            entry.setTxHex(getString(data));
+            entry.setStatus(getString(data));
+            entry.setNftId(getString(data));
+            data.getInt();
+            if (type == SENT) {
+                entryMap.put(entry.getTxHash(), entry);
+            } else {
+                JournalEntry sent = entryMap.get(entry.getTxHash());
+                if (sent != null) {
+                    sent.setStatus(entry.getStatus());
+                    sent.setNftId(entry.getNftId());
+                    sent.setTime(entry.getTime());
+                }
+            }
+        }
+        if (data.hasRemaining()) {
+            // 崩溃时未写完的尾部记录
+            log.warn("tx journal {} truncated at {}, size:{}", file.getName(), data.position(), data.limit());
+        }
+    }
+
+    private void append(byte type, JournalEntry entry) throws IOException {
+        int maxSize = 4 + 1 + 8 + 6 * 4 + 3 * (length(entry.getTxHash()) + length(entry.getFunction()) + length(entry.getAddress())
+                + length(entry.getTxHex()) + length(entry.getStatus()) + length(entry.getNftId())) + 4;
+        if (buffer.remaining() < maxSize) {
+            flush();
+            if (buffer.capacity() < maxSize) {
+                buffer = ByteBuffer.allocateDirect(maxSize);
+            }
+        }
+        int start = buffer.position();
+        buffer.putInt(0);
+        buffer.put(type);
+        buffer.putLong(entry.getTime());
+        putString(entry.getTxHash());
+        putString(entry.getFunction());
+        putString(entry.getAddress());
+        putString(entry.getTxHex());
+        putString(entry.getStatus());
+        putString(entry.getNftId());
+        int length = buffer.position() - start - 4;
+        ByteBuffer body = buffer.duplicate();
+        body.position(start + 4);
+        body.limit(start + 4 + length);
+        crc.reset();
+        crc.update(body);
+        buffer.putInt(start, length);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        int length = value.length();
+        boolean ascii = true;
+        for (int i = 0; i < length && ascii; i++) {
+            ascii = value.charAt(i) < 0x80;
+        }
+        if (ascii) {
+            // hash、地址等都是ASCII，逐字节写入避免分配
+            buffer.putInt(length);
+            for (int i = 0; i < length; i++) {
+                buffer.put((byte) value.charAt(i));
+            }
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer data) {
+        int length = data.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(data.array(), data.position(), length, StandardCharsets.UTF_8);
+        data.position(data.position() + length);
+        return value;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private List<Long> listSegments() {
+        List<Long> segments = new ArrayList<>();
+        String[] names = dir.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                    } catch (NumberFormatException e) {
+                        log.warn("unknown file in journal dir:{}", name);
+                    }
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private File segmentFile(long no) {
+        return new File(dir, SEGMENT_PREFIX + no + SEGMENT_SUFFIX);
+    }
+
+    private static class JournalWrite {
+        private final byte type;
+        private final JournalEntry entry;
+        private final CompletableFuture<Void> future;
+
+        private JournalWrite(byte type, JournalEntry entry, CompletableFuture<Void> future) {
+            this.type = type;
+            this.entry = entry;
+            this.future = future;
+        }
+    }
+}
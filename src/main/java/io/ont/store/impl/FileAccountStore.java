@@ -0,0 +1,603 @@
+package io.ont.store.impl;
+
+import io.ont.bean.EvmAccount;
+import io.ont.exception.EvmDemoException;
+import io.ont.store.AccountStore;
+import io.ont.utils.ConfigParam;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.utils.Numeric;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+
+/**
+ * 账户持久化存储：
+ * account.log 为追加写的内存映射日志，每条记录包含公钥、地址、AES-GCM加密的私钥和userId；
+ * account.idx 为公钥/userId两个哈希索引的快照，重启时整体读入，只需补扫快照之后追加的记录；
+ * account.kdf 保存PBKDF2的盐和迭代次数，加密密钥由evm.account.secret派生，未配置或仍为默认值时拒绝启动
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "evm.account.store", havingValue = "file", matchIfMissing = true)
+public class FileAccountStore implements AccountStore {
+    private static final int LOG_MAGIC = 0x45564d41;
+    private static final int INDEX_MAGIC = 0x45564d49;
+    private static final int HEADER_SIZE = 16;
+    private static final int INITIAL_MAP_SIZE = 64 * 1024 * 1024;
+    private static final long INDEX_FLUSH_INTERVAL = 60;
+    private static final int KDF_MAGIC = 0x45564d4b;
+    private static final int KDF_ITERATIONS = 600000;
+    private static final int SALT_SIZE = 16;
+    private static final String DEFAULT_SECRET = "change-me-before-deploy";
+
+    private static final int PUBLIC_KEY_SIZE = 64;
+    private static final int ADDRESS_SIZE = 20;
+    private static final int IV_SIZE = 12;
+    private static final int PRIVATE_KEY_SIZE = 32;
+    private static final int CIPHER_SIZE = PRIVATE_KEY_SIZE + 16;
+    private static final int MAX_USER_ID_SIZE = 0xffff;
+
+    // 记录内各字段相对记录起始位置的偏移，记录以4字节长度开头，以4字节CRC结尾
+    private static final int PUBLIC_KEY_POS = 4;
+    private static final int ADDRESS_POS = PUBLIC_KEY_POS + PUBLIC_KEY_SIZE;
+    private static final int IV_POS = ADDRESS_POS + ADDRESS_SIZE;
+    private static final int CIPHER_POS = IV_POS + IV_SIZE;
+    private static final int USER_ID_LEN_POS = CIPHER_POS + CIPHER_SIZE;
+    private static final int USER_ID_POS = USER_ID_LEN_POS + 2;
+
+    @Autowired
+    private ConfigParam configParam;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<byte[]> keyBuffer = ThreadLocal.withInitial(() -> new byte[PUBLIC_KEY_SIZE]);
+    private final ThreadLocal<Cipher> cipherHolder = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    private final SecureRandom secureRandom = new SecureRandom();
+    // 合并刷盘：等待刷盘的写入由一个线程统一force，forcedPosition由forceLock保护
+    private final Object forceLock = new Object();
+    private long forcedPosition;
+
+    private File logFile;
+    private File indexFile;
+    private File kdfFile;
+    private RandomAccessFile logRaf;
+    private volatile MappedByteBuffer mapped;
+    private long writePosition;
+    private long indexedPosition;
+    private SecretKeySpec secretKey;
+    private OffsetIndex publicKeyIndex;
+    private OffsetIndex userIdIndex;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void open() throws Exception {
+        File dir = new File(configParam.EVM_ACCOUNT_STORE_DIR);
+        dir.mkdirs();
+        logFile = new File(dir, "account.log");
+        indexFile = new File(dir, "account.idx");
+        kdfFile = new File(dir, "account.kdf");
+        String secret = configParam.EVM_ACCOUNT_SECRET == null ? "" : configParam.EVM_ACCOUNT_SECRET.trim();
+        if (secret.isEmpty() || DEFAULT_SECRET.equals(secret)) {
+            throw new EvmDemoException("evm.account.secret is not configured, set it through the EVM_ACCOUNT_SECRET environment variable");
+        }
+        publicKeyIndex = new OffsetIndex(this::publicKeyMatches, 1024);
+        userIdIndex = new OffsetIndex(this::userIdMatches, 1024);
+
+        boolean created = !logFile.exists();
+        logRaf = new RandomAccessFile(logFile, "rw");
+        map(Math.max(INITIAL_MAP_SIZE, logRaf.length()));
+        if (created) {
+            mapped.putInt(0, LOG_MAGIC);
+            writePosition = HEADER_SIZE;
+        } else {
+            if (mapped.getInt(0) != LOG_MAGIC) {
+                throw new EvmDemoException("invalid account log: " + logFile);
+            }
+            writePosition = HEADER_SIZE;
+            loadIndex();
+        }
+        recover();
+        initKey(secret);
+        forcedPosition = writePosition;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "account-index-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushIndex, INDEX_FLUSH_INTERVAL, INDEX_FLUSH_INTERVAL, TimeUnit.SECONDS);
+        log.info("account store opened, accounts:{}, size:{}", publicKeyIndex.size(), writePosition);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        flushIndex();
+        lock.writeLock().lock();
+        try {
+            mapped.force();
+            logRaf.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void save(EvmAccount account) {
+        byte[] publicKey = Numeric.toBytesPadded(Numeric.toBigInt(account.getPublicKey()), PUBLIC_KEY_SIZE);
+        byte[] address = Numeric.hexStringToByteArray(account.getAddress());
+        byte[] privateKey = Numeric.toBytesPadded(Numeric.toBigInt(account.getPrivateKey()), PRIVATE_KEY_SIZE);
+        byte[] userId = account.getUserId() == null ? new byte[0] : account.getUserId().getBytes(StandardCharsets.UTF_8);
+        if (userId.length > MAX_USER_ID_SIZE) {
+            throw new EvmDemoException("userId too long");
+        }
+        byte[] iv = new byte[IV_SIZE];
+        secureRandom.nextBytes(iv);
+        byte[] cipherText = crypt(Cipher.ENCRYPT_MODE, iv, privateKey);
+        int recordSize = USER_ID_POS + userId.length + 4;
+
+        long end;
+        lock.writeLock().lock();
+        try {
+            ensureCapacity(writePosition + recordSize + 4);
+            int position = (int) writePosition;
+            MappedByteBuffer buffer = mapped;
+            buffer.putInt(position, recordSize - 8);
+            put(buffer, position + PUBLIC_KEY_POS, publicKey);
+            put(buffer, position + ADDRESS_POS, address);
+            put(buffer, position + IV_POS, iv);
+            put(buffer, position + CIPHER_POS, cipherText);
+            buffer.putShort(position + USER_ID_LEN_POS, (short) userId.length);
+            put(buffer, position + USER_ID_POS, userId);
+            buffer.putInt(position + recordSize - 4, crc(buffer, position, recordSize));
+            // 下一条记录的长度位置为0，作为日志结束标记
+            buffer.putInt(position + recordSize, 0);
+            writePosition += recordSize;
+            end = writePosition;
+            indexRecord(position);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitForced(end);
+    }
+
+    @Override
+    public EvmAccount getByPublicKey(String publicKey) {
+        lock.readLock().lock();
+        try {
+            long offset = findByPublicKey(publicKey);
+            return offset < 0 ? null : readAccount((int) offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public EvmAccount getByUserId(String userId) {
+        byte[] key = userId.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            long offset = userIdIndex.find(hash(key, key.length), key, key.length);
+            return offset < 0 ? null : readAccount((int) offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String getAddress(String publicKey) {
+        lock.readLock().lock();
+        try {
+            long offset = findByPublicKey(publicKey);
+            return offset < 0 ? null : Numeric.toHexString(read((int) offset + ADDRESS_POS, ADDRESS_SIZE));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Credentials getCredentials(String publicKey) {
+        byte[] iv;
+        byte[] cipherText;
+        byte[] publicKeyBytes;
+        lock.readLock().lock();
+        try {
+            long offset = findByPublicKey(publicKey);
+            if (offset < 0) {
+                return null;
+            }
+            iv = read((int) offset + IV_POS, IV_SIZE);
+            cipherText = read((int) offset + CIPHER_POS, CIPHER_SIZE);
+            publicKeyBytes = read((int) offset + PUBLIC_KEY_POS, PUBLIC_KEY_SIZE);
+        } finally {
+            lock.readLock().unlock();
+        }
+        byte[] privateKey = crypt(Cipher.DECRYPT_MODE, iv, cipherText);
+        // 公钥已存储，无需由私钥重新推导
+        ECKeyPair ecKeyPair = new ECKeyPair(new BigInteger(1, privateKey), new BigInteger(1, publicKeyBytes));
+        Arrays.fill(privateKey, (byte) 0);
+        return Credentials.create(ecKeyPair);
+    }
+
+    @Override
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return publicKeyIndex.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 等待日志刷盘到position：已有线程在刷盘时排队，轮到时若已被别的线程的force覆盖则直接返回，
+     * 并发写入共用一次force
+     */
+    private void awaitForced(long position) {
+        synchronized (forceLock) {
+            if (forcedPosition >= position) {
+                return;
+            }
+            long target;
+            MappedByteBuffer buffer;
+            lock.readLock().lock();
+            try {
+                target = writePosition;
+                buffer = mapped;
+            } finally {
+                lock.readLock().unlock();
+            }
+            buffer.force();
+            forcedPosition = target;
+        }
+    }
+
+    /**
+     * 读取或生成account.kdf并派生密钥
+     */
+    private void initKey(String secret) throws Exception {
+        KdfParams params = readKdf();
+        if (params == null) {
+            if (writePosition > HEADER_SIZE) {
+                throw new EvmDemoException("account kdf file missing: " + kdfFile);
+            }
+            byte[] salt = new byte[SALT_SIZE];
+            secureRandom.nextBytes(salt);
+            params = new KdfParams(KDF_ITERATIONS, salt);
+            writeKdf(params);
+        }
+        secretKey = deriveKey(secret, params.salt, params.iterations);
+        if (writePosition > HEADER_SIZE) {
+            // 用第一条记录校验密钥，密钥错误时启动失败而不是在读取账户时报错
+            try {
+                crypt(secretKey, Cipher.DECRYPT_MODE, read(HEADER_SIZE + IV_POS, IV_SIZE), read(HEADER_SIZE + CIPHER_POS, CIPHER_SIZE));
+            } catch (EvmDemoException e) {
+                throw new EvmDemoException("evm.account.secret does not match account store: " + logFile);
+            }
+        }
+    }
+
+    private static SecretKeySpec deriveKey(String secret, byte[] salt, int iterations) throws Exception {
+        PBEKeySpec spec = new PBEKeySpec(secret.toCharArray(), salt, iterations, 256);
+        try {
+            byte[] key = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            return new SecretKeySpec(key, "AES");
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private KdfParams readKdf() throws IOException {
+        if (!kdfFile.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(kdfFile))) {
+            if (in.readInt() != KDF_MAGIC) {
+                throw new EvmDemoException("invalid account kdf file: " + kdfFile);
+            }
+            int iterations = in.readInt();
+            byte[] salt = new byte[in.readUnsignedByte()];
+            in.readFully(salt);
+            return new KdfParams(iterations, salt);
+        }
+    }
+
+    private void writeKdf(KdfParams params) throws IOException {
+        File tmp = new File(kdfFile.getPath() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(tmp); DataOutputStream out = new DataOutputStream(file)) {
+            out.writeInt(KDF_MAGIC);
+            out.writeInt(params.iterations);
+            out.writeByte(params.salt.length);
+            out.write(params.salt);
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(tmp.toPath(), kdfFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 将16进制公钥解析到线程复用的缓冲区后查索引，不创建中间对象
+     */
+    private long findByPublicKey(String publicKey) {
+        byte[] key = keyBuffer.get();
+        if (!parsePublicKey(publicKey, key)) {
+            return -1;
+        }
+        return publicKeyIndex.find(hash(key, PUBLIC_KEY_SIZE), key, PUBLIC_KEY_SIZE);
+    }
+
+    private boolean parsePublicKey(String hex, byte[] out) {
+        if (hex == null) {
+            return false;
+        }
+        int start = hex.startsWith("0x") || hex.startsWith("0X") ? 2 : 0;
+        int digits = hex.length() - start;
+        if (digits == 0 || digits > PUBLIC_KEY_SIZE * 2) {
+            return false;
+        }
+        // 公钥按数值存储，左侧补0到64字节
+        int nibble = PUBLIC_KEY_SIZE * 2 - digits;
+        for (int i = 0; i < nibble / 2; i++) {
+            out[i] = 0;
+        }
+        if ((nibble & 1) == 1) {
+            out[nibble / 2] = 0;
+        }
+        for (int i = start; i < hex.length(); i++, nibble++) {
+            int value = Character.digit(hex.charAt(i), 16);
+            if (value < 0) {
+                return false;
+            }
+            int index = nibble >> 1;
+            if ((nibble & 1) == 0) {
+                out[index] = (byte) (value << 4);
+            } else {
+                out[index] = (byte) (out[index] | value);
+            }
+        }
+        return true;
+    }
+
+    private boolean publicKeyMatches(long offset, byte[] key, int keyLength) {
+        MappedByteBuffer buffer = mapped;
+        int position = (int) offset + PUBLIC_KEY_POS;
+        for (int i = 0; i < keyLength; i++) {
+            if (buffer.get(position + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean userIdMatches(long offset, byte[] key, int keyLength) {
+        MappedByteBuffer buffer = mapped;
+        int position = (int) offset;
+        if ((buffer.getShort(position + USER_ID_LEN_POS) & 0xffff) != keyLength) {
+            return false;
+        }
+        for (int i = 0; i < keyLength; i++) {
+            if (buffer.get(position + USER_ID_POS + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void indexRecord(int position) {
+        MappedByteBuffer buffer = mapped;
+        byte[] publicKey = read(position + PUBLIC_KEY_POS, PUBLIC_KEY_SIZE);
+        publicKeyIndex.put(hash(publicKey, PUBLIC_KEY_SIZE), publicKey, PUBLIC_KEY_SIZE, position);
+        int userIdLength = buffer.getShort(position + USER_ID_LEN_POS) & 0xffff;
+        if (userIdLength > 0) {
+            byte[] userId = read(position + USER_ID_POS, userIdLength);
+            userIdIndex.put(hash(userId, userIdLength), userId, userIdLength, position);
+        }
+    }
+
+    private EvmAccount readAccount(int position) {
+        byte[] publicKey = read(position + PUBLIC_KEY_POS, PUBLIC_KEY_SIZE);
+        byte[] address = read(position + ADDRESS_POS, ADDRESS_SIZE);
+        byte[] iv = read(position + IV_POS, IV_SIZE);
+        byte[] cipherText = read(position + CIPHER_POS, CIPHER_SIZE);
+        int userIdLength = mapped.getShort(position + USER_ID_LEN_POS) & 0xffff;
+        byte[] userId = read(position + USER_ID_POS, userIdLength);
+        byte[] privateKey = crypt(Cipher.DECRYPT_MODE, iv, cipherText);
+        EvmAccount account = new EvmAccount();
+        account.setPublicKey(Numeric.toHexStringWithPrefix(new BigInteger(1, publicKey)));
+        account.setAddress(Numeric.toHexString(address));
+        account.setPrivateKey(Numeric.toHexStringWithPrefix(new BigInteger(1, privateKey)));
+        account.setUserId(userIdLength == 0 ? null : new String(userId, StandardCharsets.UTF_8));
+        return account;
+    }
+
+    /**
+     * 补扫索引快照之后追加的记录，截断末尾写了一半的记录
+     */
+    private void recover() {
+        long position = Math.max(indexedPosition, HEADER_SIZE);
+        MappedByteBuffer buffer = mapped;
+        int recovered = 0;
+        while (position + 4 <= buffer.capacity()) {
+            int bodySize = buffer.getInt((int) position);
+            int recordSize = bodySize + 8;
+            if (bodySize <= 0 || bodySize < USER_ID_POS - 4 || position + recordSize > buffer.capacity()) {
+                break;
+            }
+            int storedCrc = buffer.getInt((int) position + recordSize - 4);
+            if (storedCrc != crc(buffer, (int) position, recordSize)) {
+                log.warn("account log corrupted at:{}, truncate", position);
+                break;
+            }
+            indexRecord((int) position);
+            position += recordSize;
+            recovered++;
+        }
+        writePosition = position;
+        if (position + 4 <= buffer.capacity()) {
+            buffer.putInt((int) position, 0);
+        }
+        if (recovered > 0) {
+            log.info("account log recovered {} records after index snapshot", recovered);
+        }
+    }
+
+    private void loadIndex() {
+        if (!indexFile.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 1 << 16))) {
+            if (in.readInt() != INDEX_MAGIC) {
+                return;
+            }
+            long position = in.readLong();
+            publicKeyIndex.readFrom(in);
+            userIdIndex.readFrom(in);
+            indexedPosition = position;
+        } catch (IOException e) {
+            log.warn("load account index error, rebuild from log", e);
+            publicKeyIndex = new OffsetIndex(this::publicKeyMatches, 1024);
+            userIdIndex = new OffsetIndex(this::userIdMatches, 1024);
+            indexedPosition = 0;
+        }
+    }
+
+    private synchronized void flushIndex() {
+        lock.readLock().lock();
+        try {
+            if (writePosition == indexedPosition) {
+                return;
+            }
+            File tmp = new File(indexFile.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+                out.writeInt(INDEX_MAGIC);
+                out.writeLong(writePosition);
+                publicKeyIndex.writeTo(out);
+                userIdIndex.writeTo(out);
+            }
+            mapped.force();
+            Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            indexedPosition = writePosition;
+        } catch (IOException e) {
+            log.error("flush account index error", e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void ensureCapacity(long required) {
+        if (required <= mapped.capacity()) {
+            return;
+        }
+        long size = mapped.capacity();
+        while (size < required) {
+            size <<= 1;
+        }
+        try {
+            map(size);
+        } catch (IOException e) {
+            throw new EvmDemoException("grow account log error: " + e.getMessage());
+        }
+    }
+
+    private void map(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new EvmDemoException("account log is full");
+        }
+        mapped = logRaf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private byte[] crypt(int mode, byte[] iv, byte[] input) {
+        return crypt(secretKey, mode, iv, input);
+    }
+
+    private byte[] crypt(SecretKeySpec key, int mode, byte[] iv, byte[] input) {
+        try {
+            Cipher cipher = cipherHolder.get();
+            cipher.init(mode, key, new GCMParameterSpec(128, iv));
+            return cipher.doFinal(input);
+        } catch (Exception e) {
+            throw new EvmDemoException("account key crypt error: " + e.getMessage());
+        }
+    }
+
+    private byte[] read(int position, int length) {
+        byte[] bytes = new byte[length];
+        MappedByteBuffer buffer = mapped;
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(position + i);
+        }
+        return bytes;
+    }
+
+    private void put(MappedByteBuffer buffer, int position, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            buffer.put(position + i, bytes[i]);
+        }
+    }
+
+    private int crc(MappedByteBuffer buffer, int position, int recordSize) {
+        CRC32 crc32 = new CRC32();
+        for (int i = position + 4; i < position + recordSize - 4; i++) {
+            crc32.update(buffer.get(i));
+        }
+        return (int) crc32.getValue();
+    }
+
+    private static class KdfParams {
+        private final int iterations;
+        private final byte[] salt;
+
+        private KdfParams(int iterations, byte[] salt) {
+            this.iterations = iterations;
+            this.salt = salt;
+        }
+    }
+
+    private int hash(byte[] key, int length) {
+        int hash = 0x811c9dc5;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ (key[i] & 0xff)) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
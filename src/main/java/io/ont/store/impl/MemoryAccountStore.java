@@ -0,0 +1,56 @@
+package io.ont.store.impl;
+
+import io.ont.bean.EvmAccount;
+import io.ont.store.AccountStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.web3j.crypto.Credentials;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * 仅保存在内存中，重启后绑定关系丢失
+ */
+@Component
+@ConditionalOnProperty(name = "evm.account.store", havingValue = "memory")
+public class MemoryAccountStore implements AccountStore {
+    private Map<String, EvmAccount> userAccountMap = new ConcurrentHashMap<>();
+    private Map<String, EvmAccount> userIdMap = new ConcurrentHashMap<>();
+
+    @Override
+    public void save(EvmAccount account) {
+        userAccountMap.put(account.getPublicKey(), account);
+        if (account.getUserId() != null) {
+            userIdMap.put(account.getUserId(), account);
+        }
+    }
+
+    @Override
+    public EvmAccount getByPublicKey(String publicKey) {
+        return userAccountMap.get(publicKey);
+    }
+
+    @Override
+    public EvmAccount getByUserId(String userId) {
+        return userIdMap.get(userId);
+    }
+
+    @Override
+    public String getAddress(String publicKey) {
+        EvmAccount account = userAccountMap.get(publicKey);
+        return account == null ? null : account.getAddress();
+    }
+
+    @Override
+    public Credentials getCredentials(String publicKey) {
+        EvmAccount account = userAccountMap.get(publicKey);
+        return account == null ? null : Credentials.create(account.getPrivateKey());
+    }
+
+    @Override
+    public long size() {
+        return userAccountMap.size();
+    }
+}
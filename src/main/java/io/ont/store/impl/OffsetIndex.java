@@ -0,0 +1,116 @@
+package io.ont.store.impl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+
+/**
+ * 开放寻址哈希索引，只保存记录在日志文件中的偏移量和key的哈希值，
+ * key本身不在内存中保存，比较时由KeyComparator直接读取日志文件
+ */
+class OffsetIndex {
+    private static final float LOAD_FACTOR = 0.5f;
+
+    interface KeyComparator {
+        boolean matches(long offset, byte[] key, int keyLength);
+    }
+
+    private final KeyComparator comparator;
+    // 偏移量+1，0表示空位
+    private long[] slots;
+    private int[] hashes;
+    private int size;
+
+    OffsetIndex(KeyComparator comparator, int initialCapacity) {
+        this.comparator = comparator;
+        int capacity = Integer.highestOneBit(Math.max(16, initialCapacity) - 1) << 1;
+        this.slots = new long[capacity];
+        this.hashes = new int[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return 记录偏移量，不存在返回-1
+     */
+    long find(int hash, byte[] key, int keyLength) {
+        int mask = slots.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            long slot = slots[i];
+            if (slot == 0) {
+                return -1;
+            }
+            if (hashes[i] == hash && comparator.matches(slot - 1, key, keyLength)) {
+                return slot - 1;
+            }
+        }
+    }
+
+    /**
+     * key已存在时覆盖为新的偏移量
+     */
+    void put(int hash, byte[] key, int keyLength, long offset) {
+        if (size + 1 > slots.length * LOAD_FACTOR) {
+            resize();
+        }
+        int mask = slots.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            long slot = slots[i];
+            if (slot == 0) {
+                slots[i] = offset + 1;
+                hashes[i] = hash;
+                size++;
+                return;
+            }
+            if (hashes[i] == hash && comparator.matches(slot - 1, key, keyLength)) {
+                slots[i] = offset + 1;
+                return;
+            }
+        }
+    }
+
+    private void resize() {
+        long[] oldSlots = slots;
+        int[] oldHashes = hashes;
+        slots = new long[oldSlots.length << 1];
+        hashes = new int[oldSlots.length << 1];
+        int mask = slots.length - 1;
+        for (int j = 0; j < oldSlots.length; j++) {
+            if (oldSlots[j] == 0) {
+                continue;
+            }
+            int i = oldHashes[j] & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = oldSlots[j];
+            hashes[i] = oldHashes[j];
+        }
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(slots.length);
+        out.writeInt(size);
+        for (int i = 0; i < slots.length; i++) {
+            out.writeLong(slots[i]);
+            out.writeInt(hashes[i]);
+        }
+    }
+
+    void readFrom(DataInputStream in) throws IOException {
+        int capacity = in.readInt();
+        int count = in.readInt();
+        long[] newSlots = new long[capacity];
+        int[] newHashes = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            newSlots[i] = in.readLong();
+            newHashes[i] = in.readInt();
+        }
+        slots = newSlots;
+        hashes = newHashes;
+        size = count;
+    }
+}
@@ -0,0 +1,205 @@
+package io.ont.utils;
+
+import io.micrometer.core.instrument.Counter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.websocket.WebSocketClient;
+import org.web3j.protocol.websocket.WebSocketService;
+import org.web3j.protocol.websocket.events.NewHeadsNotification;
+import org.web3j.utils.Numeric;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * 通过WebSocket订阅newHeads，每个新区块查询一次区块收据来确认待确认交易，确认延迟为出块时间加一次RPC；
+ * 连接断开后按evm.ws.reconnect.delay重连，并从上次处理的区块补齐到最新区块，
+ * 缺口超过evm.ws.catchup.blocks时不再逐块补齐，改为按交易hash轮询一次。未配置evm.ws.url时不启用
+ */
+@Slf4j
+@Component
+public class BlockSubscriber {
+
+    @Autowired
+    private ConfigParam configParam;
+    @Autowired
+    private Web3jSdkUtil web3jSdkUtil;
+    @Autowired
+    private ReceiptResolver receiptResolver;
+    @Autowired
+    private BlockTracker blockTracker;
+    @Autowired
+    private EvmMetrics evmMetrics;
+
+    // 只在scheduler线程上访问
+    private long lastBlock = -1;
+    private WebSocketService webSocketService;
+    private Web3j web3j;
+    private int generation;
+
+    private ScheduledExecutorService scheduler;
+    private Counter headCounter;
+    private Counter reconnectCounter;
+    private volatile boolean stopped;
+
+    @PostConstruct
+    public void start() {
+        if (configParam.EVM_WS_URL == null || configParam.EVM_WS_URL.trim().isEmpty()) {
+            return;
+        }
+        headCounter = evmMetrics.counter("evm.ws.head");
+        reconnectCounter = evmMetrics.counter("evm.ws.reconnect");
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "block-subscriber");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.execute(this::connect);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        stopped = true;
+        scheduler.execute(this::disconnect);
+        scheduler.shutdown();
+    }
+
+    private void connect() {
+        if (stopped) {
+            return;
+        }
+        int current = ++generation;
+        try {
+            WebSocketService service = new WebSocketService(new WebSocketClient(new URI(configParam.EVM_WS_URL.trim())), false);
+            service.connect(message -> {
+            }, e -> post(() -> onDisconnect(current, e)), () -> post(() -> onDisconnect(current, null)));
+            webSocketService = service;
+            // 每个连接一个Web3j，断开时shutdown；订阅不需要轮询线程，线程池只在被使用时才创建线程
+            web3j = Web3j.build(service, configParam.EVM_BLOCK_INTERVAL, Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "block-subscriber-web3j");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            web3j.newHeadsNotifications().subscribe(
+                    notification -> post(() -> onHead(current, notification)),
+                    e -> post(() -> onDisconnect(current, e)));
+            receiptResolver.setSubscribed(true);
+            log.info("subscribed new heads, url:{}", configParam.EVM_WS_URL);
+            catchUp();
+        } catch (Exception e) {
+            log.warn("subscribe new heads error:{}", e.getMessage());
+            onDisconnect(current, e);
+        }
+    }
+
+    private void onHead(int current, NewHeadsNotification notification) {
+        if (current != generation) {
+            return;
+        }
+        try {
+            headCounter.increment();
+            long blockNumber = Numeric.toBigInt(notification.getParams().getResult().getNumber()).longValue();
+            blockTracker.onBlock(blockNumber);
+            // 同一高度再次出现(分叉替换)时重新处理该区块
+            processTo(blockNumber <= lastBlock ? blockNumber - 1 : lastBlock, blockNumber);
+        } catch (Throwable e) {
+            log.error("process new head error", e);
+        }
+    }
+
+    /**
+     * 重连后补齐断线期间的区块，查询最新高度失败时按交易hash轮询一次
+     */
+    private void catchUp() {
+        BigInteger latest;
+        try {
+            latest = web3jSdkUtil.getLatestBlockNumber();
+        } catch (Exception e) {
+            log.warn("get latest block error:{}", e.getMessage());
+            latest = null;
+        }
+        if (latest == null) {
+            receiptResolver.pollNow();
+            return;
+        }
+        long latestBlock = latest.longValue();
+        blockTracker.onBlock(latestBlock);
+        if (lastBlock < 0) {
+            lastBlock = latestBlock;
+            return;
+        }
+        processTo(lastBlock, latestBlock);
+    }
+
+    private void processTo(long from, long to) {
+        if (to <= from) {
+            return;
+        }
+        if (from < 0 || to - from > configParam.EVM_WS_CATCHUP_BLOCKS) {
+            log.warn("new heads gap too large, from:{}, to:{}, poll receipts instead", from, to);
+            receiptResolver.pollNow();
+        } else {
+            for (long blockNumber = from + 1; blockNumber <= to; blockNumber++) {
+                receiptResolver.onBlock(blockNumber);
+            }
+        }
+        lastBlock = to;
+    }
+
+    private void onDisconnect(int current, Throwable e) {
+        if (current != generation) {
+            return;
+        }
+        // 作废本次连接，之后到达的回调都忽略
+        generation++;
+        receiptResolver.setSubscribed(false);
+        disconnect();
+        if (stopped) {
+            return;
+        }
+        log.warn("new heads subscription closed, reconnect in {}ms, error:{}", configParam.EVM_WS_RECONNECT_DELAY, e == null ? null : e.getMessage());
+        reconnectCounter.increment();
+        scheduler.schedule(this::connect, configParam.EVM_WS_RECONNECT_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * WebSocket回调线程上只转交给scheduler，停止后丢弃
+     */
+    private void post(Runnable task) {
+        if (!stopped) {
+            scheduler.execute(task);
+        }
+    }
+
+    private void disconnect() {
+        // 不单独取消订阅(连接可能已断开)，关闭连接时节点和web3j都会结束订阅
+        if (web3j != null) {
+            // 同时关闭线程池和WebSocket连接
+            try {
+                web3j.shutdown();
+            } catch (Exception e) {
+                log.debug("shutdown web3j error:{}", e.getMessage());
+            }
+            web3j = null;
+            webSocketService = null;
+        } else if (webSocketService != null) {
+            try {
+                webSocketService.close();
+            } catch (Exception e) {
+                log.debug("close websocket error:{}", e.getMessage());
+            }
+            webSocketService = null;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package io.ont.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigInteger;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+@Slf4j
+@Component
+public class BlockTracker {
+
+    @Autowired
+    private ConfigParam configParam;
+    @Autowired
+    private Web3jSdkUtil web3jSdkUtil;
+
+    private volatile long latestBlock = -1;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "block-tracker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refresh, 0, configParam.EVM_BLOCK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 本地已知的最新区块高度，未知时返回-1
+     * @return
+     */
+    public long getLatestBlock() {
+        return latestBlock;
+    }
+
+    /**
+     * 外部得知新区块时更新高度(只增不减)
+     * @param blockNumber
+     */
+    public void onBlock(long blockNumber) {
+        synchronized (this) {
+            if (blockNumber > latestBlock) {
+                latestBlock = blockNumber;
+            }
+        }
+    }
+
+    private void refresh() {
+        try {
+            BigInteger blockNumber = web3jSdkUtil.getLatestBlockNumber();
+            if (blockNumber != null) {
+                onBlock(blockNumber.longValue());
+            }
+        } catch (Throwable e) {
+            log.warn("refresh latest block error:{}", e.getMessage());
+        }
+    }
+}
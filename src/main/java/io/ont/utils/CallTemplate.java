@@ -0,0 +1,202 @@
+package io.ont.utils;
+
+import io.ont.exception.EvmDemoException;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.generated.Bytes32;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.crypto.Hash;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * NFT合约方法的预编译调用模板：函数选择器启动时计算一次，参数直接写入线程复用的缓冲区；
+ * 参数与返回值都是32字节的静态类型，不经过FunctionEncoder/FunctionReturnDecoder的通用反射路径
+ */
+public final class CallTemplate {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int WORD_CHARS = 64;
+    private static final int MAX_ARGS = 2;
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[2 + 8 + WORD_CHARS * MAX_ARGS]);
+
+    public static final CallTemplate MINT = new CallTemplate(Constant.MINT, null, AbiType.BYTES32);
+    public static final CallTemplate TRANSFER = new CallTemplate(Constant.TRANSFER, null, AbiType.ADDRESS, AbiType.UINT256);
+    public static final CallTemplate BURN = new CallTemplate(Constant.BURN, null, AbiType.UINT256);
+    public static final CallTemplate GET_META_DATA = new CallTemplate(Constant.GET_META_DATA, AbiType.BYTES32, AbiType.UINT256);
+    public static final CallTemplate OWNER_OF = new CallTemplate(Constant.OWNER_OF, AbiType.ADDRESS, AbiType.UINT256);
+
+    private static final Map<String, CallTemplate> TEMPLATES = new HashMap<>();
+
+    static {
+        for (CallTemplate template : new CallTemplate[]{MINT, TRANSFER, BURN, GET_META_DATA, OWNER_OF}) {
+            TEMPLATES.put(template.name, template);
+        }
+    }
+
+    private enum AbiType {
+        ADDRESS("address", Address.class),
+        UINT256("uint256", Uint256.class),
+        BYTES32("bytes32", Bytes32.class);
+
+        private final String name;
+        private final Class<?> typeClass;
+
+        AbiType(String name, Class<?> typeClass) {
+            this.name = name;
+            this.typeClass = typeClass;
+        }
+    }
+
+    private final String name;
+    private final String signature;
+    private final char[] selector;
+    private final AbiType output;
+    private final AbiType[] inputs;
+
+    private CallTemplate(String name, AbiType output, AbiType... inputs) {
+        StringBuilder builder = new StringBuilder(name).append('(');
+        for (int i = 0; i < inputs.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(inputs[i].name);
+        }
+        this.name = name;
+        this.signature = builder.append(')').toString();
+        this.selector = Hash.sha3String(signature).substring(2, 10).toCharArray();
+        this.output = output;
+        this.inputs = inputs;
+    }
+
+    /**
+     * 按方法名查找模板
+     * @param name
+     * @return 未预编译的方法返回null
+     */
+    public static CallTemplate of(String name) {
+        return TEMPLATES.get(name);
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    /**
+     * 编码调用数据：0x + 4字节选择器 + 参数
+     * @param params
+     * @return
+     */
+    public String encode(List<Type> params) {
+        char[] buffer = BUFFER.get();
+        buffer[0] = '0';
+        buffer[1] = 'x';
+        System.arraycopy(selector, 0, buffer, 2, selector.length);
+        int length = writeArguments(params, buffer, 2 + selector.length);
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * 只编码参数部分(不含0x及选择器)
+     * @param params
+     * @return
+     */
+    public String encodeArguments(List<Type> params) {
+        char[] buffer = BUFFER.get();
+        int length = writeArguments(params, buffer, 0);
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * 解码eth_call返回值，返回为空(如调用revert)时返回空列表
+     * @param value
+     * @return
+     */
+    public List<Type> decode(String value) {
+        if (output == null) {
+            throw new EvmDemoException(name + " has no return value");
+        }
+        if (value == null || value.length() < 2 + WORD_CHARS) {
+            return Collections.emptyList();
+        }
+        switch (output) {
+            case ADDRESS:
+                return Collections.singletonList(new Address("0x" + value.substring(2 + WORD_CHARS - 40, 2 + WORD_CHARS)));
+            case BYTES32:
+                byte[] bytes = new byte[32];
+                for (int i = 0; i < 32; i++) {
+                    bytes[i] = (byte) ((hexValue(value.charAt(2 + i * 2)) << 4) | hexValue(value.charAt(3 + i * 2)));
+                }
+                return Collections.singletonList(new Bytes32(bytes));
+            default:
+                return Collections.singletonList(new Uint256(new BigInteger(value.substring(2, 2 + WORD_CHARS), 16)));
+        }
+    }
+
+    private int writeArguments(List<Type> params, char[] buffer, int offset) {
+        if (params.size() != inputs.length) {
+            throw new EvmDemoException(signature + " expects " + inputs.length + " arguments");
+        }
+        for (int i = 0; i < inputs.length; i++) {
+            Type param = params.get(i);
+            if (!inputs[i].typeClass.isInstance(param)) {
+                throw new EvmDemoException(signature + " argument " + i + " is not " + inputs[i].name);
+            }
+            switch (inputs[i]) {
+                case ADDRESS:
+                    writeUint(((Address) param).toUint().getValue(), buffer, offset);
+                    break;
+                case BYTES32:
+                    writeBytes(((Bytes32) param).getValue(), buffer, offset);
+                    break;
+                default:
+                    writeUint(((Uint256) param).getValue(), buffer, offset);
+                    break;
+            }
+            offset += WORD_CHARS;
+        }
+        return offset;
+    }
+
+    private static void writeBytes(byte[] bytes, char[] buffer, int offset) {
+        for (int i = 0; i < bytes.length; i++) {
+            buffer[offset + i * 2] = HEX[(bytes[i] >> 4) & 0x0f];
+            buffer[offset + i * 2 + 1] = HEX[bytes[i] & 0x0f];
+        }
+    }
+
+    private static void writeUint(BigInteger value, char[] buffer, int offset) {
+        if (value.bitLength() < 64) {
+            // 常见的tokenId不超过long范围，直接按16进制写入，不生成中间byte[]
+            long v = value.longValue();
+            for (int i = WORD_CHARS - 1; i >= 0; i--) {
+                buffer[offset + i] = HEX[(int) (v & 0x0f)];
+                v >>>= 4;
+            }
+            return;
+        }
+        byte[] bytes = value.toByteArray();
+        int start = bytes.length > 32 ? bytes.length - 32 : 0;
+        int pad = 32 - (bytes.length - start);
+        for (int i = 0; i < pad * 2; i++) {
+            buffer[offset + i] = '0';
+        }
+        for (int i = start; i < bytes.length; i++) {
+            int pos = offset + (pad + i - start) * 2;
+            buffer[pos] = HEX[(bytes[i] >> 4) & 0x0f];
+            buffer[pos + 1] = HEX[bytes[i] & 0x0f];
+        }
+    }
+
+    private static int hexValue(char c) {
+        int v = Character.digit(c, 16);
+        if (v < 0) {
+            throw new EvmDemoException("invalid hex character: " + c);
+        }
+        return v;
+    }
+}
@@ -3,6 +3,7 @@ package io.ont.utils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
 import java.math.BigInteger;
 
 
@@ -10,7 +11,7 @@ import java.math.BigInteger;
 public class ConfigParam {
 
     @Value("${evm.web3j.url}")
-    public String EVM_WEB3J_URL;
+    public String[] EVM_WEB3J_URL;
 
     @Value("${evm.gas.limit}")
     public BigInteger EVM_GAS_LIMIT;
@@ -18,9 +19,231 @@ public class ConfigParam {
     @Value("${evm.gas.price}")
     public BigInteger EVM_GAS_PRICE;
 
+    @Value("${evm.gas.margin}")
+    public BigDecimal EVM_GAS_MARGIN;
+
+    @Value("${evm.gas.refresh}")
+    public long EVM_GAS_REFRESH;
+
+    @Value("${evm.gas.price.ttl}")
+    public long EVM_GAS_PRICE_TTL;
+
     @Value("${nft.contract}")
     public String NFT_CONTRACT;
 
     @Value("${evm.chain.id}")
     public long EVM_CHAIN_ID;
-}
\ No newline at end of file
+
+    @Value("${evm.receipt.interval}")
+    public long EVM_RECEIPT_INTERVAL;
+
+    @Value("${evm.receipt.timeout}")
+    public long EVM_RECEIPT_TIMEOUT;
+
+    @Value("${evm.receipt.batch.size}")
+    public int EVM_RECEIPT_BATCH_SIZE;
+
+    @Value("${evm.receipt.late.interval}")
+    public long EVM_RECEIPT_LATE_INTERVAL;
+
+    @Value("${evm.receipt.late.timeout}")
+    public long EVM_RECEIPT_LATE_TIMEOUT;
+
+    @Value("${evm.ws.url}")
+    public String EVM_WS_URL;
+
+    @Value("${evm.ws.reconnect.delay}")
+    public long EVM_WS_RECONNECT_DELAY;
+
+    @Value("${evm.ws.catchup.blocks}")
+    public long EVM_WS_CATCHUP_BLOCKS;
+
+    @Value("${evm.ws.poll.interval}")
+    public long EVM_WS_POLL_INTERVAL;
+
+    @Value("${evm.lane.count}")
+    public int EVM_LANE_COUNT;
+
+    @Value("${evm.lane.inflight}")
+    public int EVM_LANE_INFLIGHT;
+
+    @Value("${evm.lane.queue.size}")
+    public int EVM_LANE_QUEUE_SIZE;
+
+    @Value("${evm.sign.threads}")
+    public int EVM_SIGN_THREADS;
+
+    @Value("${evm.sign.queue.size}")
+    public int EVM_SIGN_QUEUE_SIZE;
+
+    @Value("${evm.tx.status.size}")
+    public long EVM_TX_STATUS_SIZE;
+
+    @Value("${evm.tx.status.ttl}")
+    public long EVM_TX_STATUS_TTL;
+
+    @Value("${evm.audit.enabled}")
+    public boolean EVM_AUDIT_ENABLED;
+
+    @Value("${evm.audit.receipt.sample}")
+    public double EVM_AUDIT_RECEIPT_SAMPLE;
+
+    @Value("${evm.journal.enabled}")
+    public boolean EVM_JOURNAL_ENABLED;
+
+    @Value("${evm.journal.dir}")
+    public String EVM_JOURNAL_DIR;
+
+    @Value("${evm.journal.segment.size}")
+    public long EVM_JOURNAL_SEGMENT_SIZE;
+
+    @Value("${evm.idempotency.size}")
+    public long EVM_IDEMPOTENCY_SIZE;
+
+    @Value("${evm.idempotency.ttl}")
+    public long EVM_IDEMPOTENCY_TTL;
+
+    @Value("${evm.query.batch.size}")
+    public int EVM_QUERY_BATCH_SIZE;
+
+    @Value("${evm.query.parallelism}")
+    public int EVM_QUERY_PARALLELISM;
+
+    @Value("${evm.block.interval}")
+    public long EVM_BLOCK_INTERVAL;
+
+    @Value("${evm.cache.meta.size}")
+    public long EVM_CACHE_META_SIZE;
+
+    @Value("${evm.cache.owner.size}")
+    public long EVM_CACHE_OWNER_SIZE;
+
+    @Value("${evm.cache.owner.ttl}")
+    public long EVM_CACHE_OWNER_TTL;
+
+    @Value("${evm.indexer.enabled}")
+    public boolean EVM_INDEXER_ENABLED;
+
+    @Value("${evm.indexer.start.block}")
+    public long EVM_INDEXER_START_BLOCK;
+
+    @Value("${evm.indexer.range}")
+    public long EVM_INDEXER_RANGE;
+
+    @Value("${evm.indexer.reorg.depth}")
+    public long EVM_INDEXER_REORG_DEPTH;
+
+    @Value("${evm.indexer.interval}")
+    public long EVM_INDEXER_INTERVAL;
+
+    @Value("${evm.indexer.max.lag}")
+    public long EVM_INDEXER_MAX_LAG;
+
+    @Value("${evm.backfill.range}")
+    public long EVM_BACKFILL_RANGE;
+
+    @Value("${evm.backfill.parallelism}")
+    public int EVM_BACKFILL_PARALLELISM;
+
+    @Value("${evm.backfill.retries}")
+    public int EVM_BACKFILL_RETRIES;
+
+    @Value("${evm.indexer.file}")
+    public String EVM_INDEXER_FILE;
+
+    @Value("${evm.account.store.dir}")
+    public String EVM_ACCOUNT_STORE_DIR;
+
+    @Value("${evm.account.secret}")
+    public String EVM_ACCOUNT_SECRET;
+
+    @Value("${evm.credentials.cache.size}")
+    public long EVM_CREDENTIALS_CACHE_SIZE;
+
+    @Value("${evm.credentials.preload}")
+    public String[] EVM_CREDENTIALS_PRELOAD;
+
+    @Value("${evm.keypool.size}")
+    public int EVM_KEYPOOL_SIZE;
+
+    @Value("${evm.keypool.threads}")
+    public int EVM_KEYPOOL_THREADS;
+
+    @Value("${evm.rpc.connect.timeout}")
+    public long EVM_RPC_CONNECT_TIMEOUT;
+
+    @Value("${evm.rpc.read.timeout}")
+    public long EVM_RPC_READ_TIMEOUT;
+
+    @Value("${evm.rpc.write.timeout}")
+    public long EVM_RPC_WRITE_TIMEOUT;
+
+    @Value("${evm.rpc.pool.max.idle}")
+    public int EVM_RPC_POOL_MAX_IDLE;
+
+    @Value("${evm.rpc.pool.keep.alive}")
+    public long EVM_RPC_POOL_KEEP_ALIVE;
+
+    @Value("${evm.rpc.max.requests}")
+    public int EVM_RPC_MAX_REQUESTS;
+
+    @Value("${evm.rpc.max.requests.per.host}")
+    public int EVM_RPC_MAX_REQUESTS_PER_HOST;
+
+    @Value("${evm.rpc.hedge.enabled}")
+    public boolean EVM_RPC_HEDGE_ENABLED;
+
+    @Value("${evm.rpc.hedge.min.delay}")
+    public long EVM_RPC_HEDGE_MIN_DELAY;
+
+    @Value("${evm.rpc.hedge.threads}")
+    public int EVM_RPC_HEDGE_THREADS;
+
+    @Value("${evm.rpc.eject.failures}")
+    public int EVM_RPC_EJECT_FAILURES;
+
+    @Value("${evm.rpc.eject.time}")
+    public long EVM_RPC_EJECT_TIME;
+
+    @Value("${evm.admission.enabled}")
+    public boolean EVM_ADMISSION_ENABLED;
+
+    @Value("${evm.admission.adaptive}")
+    public boolean EVM_ADMISSION_ADAPTIVE;
+
+    @Value("${evm.admission.tolerance}")
+    public double EVM_ADMISSION_TOLERANCE;
+
+    @Value("${evm.admission.wait}")
+    public long EVM_ADMISSION_WAIT;
+
+    @Value("${evm.admission.write.limit}")
+    public int EVM_ADMISSION_WRITE_LIMIT;
+
+    @Value("${evm.admission.write.queue}")
+    public int EVM_ADMISSION_WRITE_QUEUE;
+
+    @Value("${evm.admission.write.rate}")
+    public double EVM_ADMISSION_WRITE_RATE;
+
+    @Value("${evm.admission.receipt.limit}")
+    public int EVM_ADMISSION_RECEIPT_LIMIT;
+
+    @Value("${evm.admission.receipt.queue}")
+    public int EVM_ADMISSION_RECEIPT_QUEUE;
+
+    @Value("${evm.admission.receipt.rate}")
+    public double EVM_ADMISSION_RECEIPT_RATE;
+
+    @Value("${evm.admission.view.limit}")
+    public int EVM_ADMISSION_VIEW_LIMIT;
+
+    @Value("${evm.admission.view.queue}")
+    public int EVM_ADMISSION_VIEW_QUEUE;
+
+    @Value("${evm.admission.view.rate}")
+    public double EVM_ADMISSION_VIEW_RATE;
+
+    @Value("${evm.tx.batch.size}")
+    public int EVM_TX_BATCH_SIZE;
+}
@@ -14,6 +14,21 @@ public class Constant {
     public static final String OWNER_OF = "ownerOf";
     public static final int SUCCESS_CODE = 0;
     public static final String SUCCESS_DESC = "SUCCESS";
+    public static final int BUSY_CODE = 429;
+    public static final int PARAM_ERROR_CODE = 400;
+    public static final int METHOD_NOT_FOUND_CODE = -32601;
+    public static final int LOG_LIMIT_CODE = -32005;
     public static final String STATUS_SUCCESS = "0x1";
+    public static final String TX_PENDING = "pending";
+    public static final String TX_SUCCESS = "success";
+    public static final String TX_FAILED = "failed";
+    public static final String TX_TIMEOUT = "timeout";
+    public static final String TX_DROPPED = "dropped";
+    public static final String ZERO_ADDRESS = "0x0000000000000000000000000000000000000000";
     public static final String TRANSFER_EVENT_HASH = "0xddf252ad1be2c89b69c2b068fc378daa952ba7f163c4a11628f55a4df523b3ef";
+    public static final String NONCE_TOO_LOW = "nonce too low";
+    public static final String ALREADY_KNOWN = "already known";
+    public static final String REPLACEMENT_UNDERPRICED = "replacement transaction underpriced";
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String BLOCK_NUMBER_HEADER = "X-Block-Number";
 }
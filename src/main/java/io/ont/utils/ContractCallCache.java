@@ -0,0 +1,164 @@
+package io.ont.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Type;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * 合约只读调用结果缓存：不可变结果(如getHash)只按容量淘汰；
+ * 可变结果(如ownerOf)在区块前进或TTL到期后失效，本服务发起的转移/销毁主动失效；
+ * 未命中时相同调用只发出一次eth_call，并发的请求等待同一结果
+ */
+@Component
+public class ContractCallCache {
+
+    @Autowired
+    private ConfigParam configParam;
+    @Autowired
+    private Web3jSdkUtil web3jSdkUtil;
+    @Autowired
+    private BlockTracker blockTracker;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, List<Type>> immutableCache;
+    private Cache<String, CachedCall> mutableCache;
+    private final Map<String, CompletableFuture<List<Type>>> inFlightCalls = new ConcurrentHashMap<>();
+    private Counter coalescedCounter;
+
+    @PostConstruct
+    public void init() {
+        immutableCache = Caffeine.newBuilder()
+                .maximumSize(configParam.EVM_CACHE_META_SIZE)
+                .recordStats()
+                .build();
+        mutableCache = Caffeine.newBuilder()
+                .maximumSize(configParam.EVM_CACHE_OWNER_SIZE)
+                .expireAfterWrite(configParam.EVM_CACHE_OWNER_TTL, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, immutableCache, "evm.call.immutable");
+        CaffeineCacheMetrics.monitor(meterRegistry, mutableCache, "evm.call.mutable");
+        coalescedCounter = meterRegistry.counter("evm.call.coalesced");
+    }
+
+    /**
+     * 优先读缓存，未命中时预执行合约方法并写入缓存
+     * @param contract
+     * @param name
+     * @param params
+     * @param outputParameters
+     * @param immutable
+     * @return
+     * @throws Exception
+     */
+    public List<Type> call(String contract, String name, List<Type> params, List<TypeReference<?>> outputParameters, boolean immutable) throws Exception {
+        List<Type> result = get(contract, name, params, immutable);
+        if (result != null) {
+            return result;
+        }
+        String key = key(contract, name, params);
+        CompletableFuture<List<Type>> future = new CompletableFuture<>();
+        CompletableFuture<List<Type>> inFlight = inFlightCalls.putIfAbsent(key, future);
+        if (inFlight != null) {
+            // 已有相同调用在执行，等待其结果
+            coalescedCounter.increment();
+            return join(inFlight);
+        }
+        try {
+            // 上一个相同调用可能刚刚写入缓存
+            result = get(contract, name, params, immutable);
+            if (result != null) {
+                future.complete(result);
+                return result;
+            }
+            long blockNumber = blockTracker.getLatestBlock();
+            result = web3jSdkUtil.sendPreTransactionAndDecode(contract, name, Constant.ETH_PRE_ADDRESS, params, outputParameters);
+            put(contract, name, params, result, immutable, blockNumber);
+            future.complete(result);
+            return result;
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightCalls.remove(key, future);
+        }
+    }
+
+    public List<Type> get(String contract, String name, List<Type> params, boolean immutable) {
+        String key = key(contract, name, params);
+        if (immutable) {
+            return immutableCache.getIfPresent(key);
+        }
+        CachedCall cachedCall = mutableCache.getIfPresent(key);
+        if (cachedCall == null) {
+            return null;
+        }
+        if (cachedCall.blockNumber < blockTracker.getLatestBlock()) {
+            // 区块已前进，结果可能已变化
+            mutableCache.invalidate(key);
+            return null;
+        }
+        return cachedCall.result;
+    }
+
+    /**
+     * @param blockNumber 发起查询前已知的最新区块高度
+     */
+    public void put(String contract, String name, List<Type> params, List<Type> result, boolean immutable, long blockNumber) {
+        if (result == null || result.isEmpty()) {
+            return;
+        }
+        String key = key(contract, name, params);
+        if (immutable) {
+            immutableCache.put(key, result);
+        } else {
+            mutableCache.put(key, new CachedCall(result, blockNumber));
+        }
+    }
+
+    public void invalidate(String contract, String name, List<Type> params) {
+        mutableCache.invalidate(key(contract, name, params));
+    }
+
+    private static List<Type> join(CompletableFuture<List<Type>> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    private String key(String contract, String name, List<Type> params) {
+        CallTemplate template = CallTemplate.of(name);
+        String arguments = template != null ? template.encodeArguments(params) : FunctionEncoder.encodeConstructor(params);
+        return contract.toLowerCase() + ":" + name + ":" + arguments;
+    }
+
+    private static class CachedCall {
+        private final List<Type> result;
+        private final long blockNumber;
+
+        private CachedCall(List<Type> result, long blockNumber) {
+            this.result = result;
+            this.blockNumber = blockNumber;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.ont.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.ont.store.AccountStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.web3j.crypto.Credentials;
+
+import javax.annotation.PostConstruct;
+
+
+/**
+ * 缓存已解密、可直接签名的Credentials，避免每笔交易都解密私钥、重建密钥对
+ */
+@Slf4j
+@Component
+public class CredentialsCache {
+
+    @Autowired
+    private ConfigParam configParam;
+    @Autowired
+    private AccountStore accountStore;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, Credentials> credentialsCache;
+
+    @PostConstruct
+    public void init() {
+        credentialsCache = Caffeine.newBuilder()
+                .maximumSize(configParam.EVM_CREDENTIALS_CACHE_SIZE)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, credentialsCache, "evm.credentials");
+        // 预加载热点账户
+        int loaded = 0;
+        for (String publicKey : configParam.EVM_CREDENTIALS_PRELOAD) {
+            if (get(publicKey.trim()) != null) {
+                loaded++;
+            }
+        }
+        if (loaded > 0) {
+            log.info("credentials preloaded:{}", loaded);
+        }
+    }
+
+    /**
+     * @param publicKey
+     * @return 未绑定账户返回null
+     */
+    public Credentials get(String publicKey) {
+        return credentialsCache.get(publicKey, accountStore::getCredentials);
+    }
+}
@@ -0,0 +1,79 @@
+package io.ont.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.Response;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * 链上调用及交易各阶段的指标；Timer和Counter在启动时注册并由调用方持有，
+ * 记录时只做固定桶的原子累加，不按样本分配对象
+ */
+@Component
+public class EvmMetrics {
+    public static final String SDK_TIMER = "evm.sdk";
+    public static final String STAGE_TIMER = "evm.tx.stage";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Counter> rpcErrorCounters = new ConcurrentHashMap<>();
+
+    /**
+     * 本地计算(编码、签名、解析)的耗时，直方图范围1µs~1s
+     * @param name
+     * @param tagKey
+     * @param tagValue
+     * @return
+     */
+    public Timer localTimer(String name, String tagKey, String tagValue) {
+        return timer(name, tagKey, tagValue, Duration.ofNanos(1000), Duration.ofSeconds(1));
+    }
+
+    /**
+     * 访问节点或等待落账的耗时，直方图范围1ms~60s
+     * @param name
+     * @param tagKey
+     * @param tagValue
+     * @return
+     */
+    public Timer remoteTimer(String name, String tagKey, String tagValue) {
+        return timer(name, tagKey, tagValue, Duration.ofMillis(1), Duration.ofSeconds(60));
+    }
+
+    public Counter counter(String name, String... tags) {
+        return meterRegistry.counter(name, tags);
+    }
+
+    /**
+     * 按方法和错误码统计节点返回的错误
+     * @param method
+     * @param error
+     */
+    public void rpcError(String method, Response.Error error) {
+        String code = String.valueOf(error.getCode());
+        rpcErrorCounters.computeIfAbsent(method + ":" + code, k -> meterRegistry.counter("evm.rpc.error", "method", method, "code", code))
+                .increment();
+    }
+
+    public static void record(Timer timer, long startNanos) {
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(String name, String tagKey, String tagValue, Duration min, Duration max) {
+        return Timer.builder(name)
+                .tag(tagKey, tagValue)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(min)
+                .maximumExpectedValue(max)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,121 @@
+package io.ont.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.web3j.abi.datatypes.Type;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * 交易gas参数：gasLimit按(方法, 参数类型)缓存eth_estimateGas结果并乘以安全系数，过期后后台重新估算；
+ * gasPrice由后台按TTL从节点刷新。发送交易时只读本地值，估算完成前使用配置的evm.gas.limit/evm.gas.price
+ */
+@Slf4j
+@Component
+public class GasOracle {
+
+    @Autowired
+    private ConfigParam configParam;
+    @Autowired
+    private Web3jSdkUtil web3jSdkUtil;
+
+    private final Map<String, GasEstimate> estimateMap = new ConcurrentHashMap<>();
+    private volatile BigInteger gasPrice;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        gasPrice = configParam.EVM_GAS_PRICE;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "gas-oracle");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refreshGasPrice, 0, configParam.EVM_GAS_PRICE_TTL, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public BigInteger getGasPrice() {
+        return gasPrice;
+    }
+
+    /**
+     * 返回缓存的gasLimit；无缓存或已过期时以本次调用为样本提交后台估算
+     * @param contract
+     * @param from
+     * @param name
+     * @param params
+     * @return
+     */
+    public BigInteger getGasLimit(String contract, String from, String name, List<Type> params) {
+        GasEstimate estimate = estimateMap.computeIfAbsent(shape(name, params), k -> new GasEstimate());
+        long now = System.currentTimeMillis();
+        if (estimate.estimatedAt + configParam.EVM_GAS_REFRESH <= now && estimate.estimating.compareAndSet(false, true)) {
+            scheduler.execute(() -> estimate(estimate, contract, from, name, params));
+        }
+        BigInteger gasLimit = estimate.gasLimit;
+        return gasLimit == null ? configParam.EVM_GAS_LIMIT : gasLimit;
+    }
+
+    private void estimate(GasEstimate estimate, String contract, String from, String name, List<Type> params) {
+        try {
+            String data = web3jSdkUtil.encodeFunction(name, params);
+            BigInteger gasUsed = web3jSdkUtil.estimateGas(from, contract, data);
+            estimate.gasLimit = new BigDecimal(gasUsed).multiply(configParam.EVM_GAS_MARGIN).setScale(0, RoundingMode.CEILING).toBigInteger();
+            log.info("gas estimate updated, function:{}, estimate:{}, limit:{}", name, gasUsed, estimate.gasLimit);
+        } catch (Throwable e) {
+            // 估算失败(如样本参数导致revert)时保留原值，下个周期再试
+            log.warn("estimate gas error, function:{}, error:{}", name, e.getMessage());
+        } finally {
+            estimate.estimatedAt = System.currentTimeMillis();
+            estimate.estimating.set(false);
+        }
+    }
+
+    private void refreshGasPrice() {
+        try {
+            BigInteger price = web3jSdkUtil.getGasPrice();
+            if (price != null) {
+                gasPrice = price;
+            }
+        } catch (Throwable e) {
+            log.warn("refresh gas price error:{}", e.getMessage());
+        }
+    }
+
+    private static String shape(String name, List<Type> params) {
+        if (CallTemplate.of(name) != null) {
+            // 预编译的方法参数类型固定
+            return name;
+        }
+        StringBuilder shape = new StringBuilder(name);
+        for (Type param : params) {
+            shape.append(',').append(param.getTypeAsString());
+        }
+        return shape.toString();
+    }
+
+    private static class GasEstimate {
+        private volatile BigInteger gasLimit;
+        private volatile long estimatedAt;
+        private final AtomicBoolean estimating = new AtomicBoolean();
+    }
+}
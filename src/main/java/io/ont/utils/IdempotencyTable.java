@@ -0,0 +1,130 @@
+package io.ont.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+
+/**
+ * 写请求幂等表：相同key的请求共用同一笔交易，进行中的请求挂到同一个future上；
+ * 客户端传入Idempotency-Key的结果按容量和TTL保留，默认key(方法+账户+参数)拿到收据后即移除，之后相同的请求是新的操作；
+ * 交易未被节点接受(发送失败)时移除，允许重试；已发送的交易收据超时时保留，避免重复上链
+ */
+@Component
+public class IdempotencyTable {
+
+    @Autowired
+    private ConfigParam configParam;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, Submission> submissionCache;
+    private Counter evictCounter;
+    private Counter hitCounter;
+
+    @PostConstruct
+    public void init() {
+        submissionCache = Caffeine.newBuilder()
+                .maximumSize(configParam.EVM_IDEMPOTENCY_SIZE)
+                .expireAfterWrite(configParam.EVM_IDEMPOTENCY_TTL, TimeUnit.SECONDS)
+                .build();
+        hitCounter = meterRegistry.counter("evm.idempotency.hit");
+        evictCounter = meterRegistry.counter("evm.idempotency.evict");
+        meterRegistry.gauge("evm.idempotency.size", submissionCache, Cache::estimatedSize);
+    }
+
+    /**
+     * 返回key对应的交易，不存在时调用supplier发送新交易
+     * @param key
+     * @param supplier
+     * @return
+     */
+    public Submission submit(Key key, Supplier<Submission> supplier) {
+        boolean[] created = new boolean[1];
+        Submission submission = submissionCache.get(key.value, k -> {
+            created[0] = true;
+            return supplier.get();
+        });
+        if (!created[0]) {
+            hitCounter.increment();
+            return submission;
+        }
+        submission.getTxHash().whenComplete((txHash, e) -> {
+            if (e != null) {
+                submissionCache.asMap().remove(key.value, submission);
+            }
+        });
+        if (!key.client) {
+            submission.getReceipt().whenComplete((receipt, e) -> {
+                if ((receipt != null || e != null) && submissionCache.asMap().remove(key.value, submission)) {
+                    evictCounter.increment();
+                }
+            });
+        }
+        return submission;
+    }
+
+    /**
+     * 默认key：方法+账户+参数；客户端传入key时按方法+账户+客户端key
+     * @param function
+     * @param publicKey
+     * @param clientKey
+     * @param args
+     * @return
+     */
+    public static Key key(String function, String publicKey, String clientKey, String... args) {
+        StringBuilder key = new StringBuilder(function).append(':').append(publicKey.toLowerCase());
+        if (clientKey != null && !clientKey.isEmpty()) {
+            return new Key(key.append(":key:").append(clientKey).toString(), true);
+        }
+        for (String arg : args) {
+            key.append(':').append(arg == null ? "" : arg.toLowerCase());
+        }
+        return new Key(key.toString(), false);
+    }
+
+    public static class Key {
+        private final String value;
+        /**
+         * 是否为客户端传入的key
+         */
+        private final boolean client;
+
+        private Key(String value, boolean client) {
+            this.value = value;
+            this.client = client;
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+
+    public static class Submission {
+        private final CompletableFuture<String> txHash;
+        private final CompletableFuture<TransactionReceipt> receipt;
+
+        public Submission(CompletableFuture<String> txHash, CompletableFuture<TransactionReceipt> receipt) {
+            this.txHash = txHash;
+            this.receipt = receipt;
+        }
+
+        public CompletableFuture<String> getTxHash() {
+            return txHash;
+        }
+
+        public CompletableFuture<TransactionReceipt> getReceipt() {
+            return receipt;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package io.ont.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.crypto.Keys;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+
+/**
+ * 后台预生成密钥对，绑定账户时直接取用；池为空时才在请求线程上现场生成
+ */
+@Slf4j
+@Component
+public class KeyPairPool {
+
+    @Autowired
+    private ConfigParam configParam;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private BlockingQueue<ECKeyPair> pool;
+    private final List<Thread> refillThreads = new ArrayList<>();
+    private volatile boolean running = true;
+
+    private Counter generatedCounter;
+    private Counter fallbackCounter;
+
+    @PostConstruct
+    public void start() {
+        pool = new ArrayBlockingQueue<>(configParam.EVM_KEYPOOL_SIZE);
+        meterRegistry.gauge("evm.keypool.depth", pool, BlockingQueue::size);
+        generatedCounter = meterRegistry.counter("evm.keypool.generated");
+        fallbackCounter = meterRegistry.counter("evm.keypool.fallback");
+        for (int i = 0; i < configParam.EVM_KEYPOOL_THREADS; i++) {
+            Thread thread = new Thread(this::refill, "keypair-refill-" + i);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+            refillThreads.add(thread);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Thread thread : refillThreads) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * 取出一个密钥对
+     * @return
+     * @throws Exception
+     */
+    public ECKeyPair take() throws Exception {
+        ECKeyPair ecKeyPair = pool.poll();
+        if (ecKeyPair == null) {
+            fallbackCounter.increment();
+            ecKeyPair = Keys.createEcKeyPair();
+        }
+        return ecKeyPair;
+    }
+
+    public int depth() {
+        return pool.size();
+    }
+
+    private void refill() {
+        while (running) {
+            try {
+                ECKeyPair ecKeyPair = Keys.createEcKeyPair();
+                generatedCounter.increment();
+                // 池满时阻塞，直到有密钥对被取走
+                pool.put(ecKeyPair);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("generate key pair error", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package io.ont.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+@Slf4j
+@Component
+public class NonceManager {
+
+    @Autowired
+    private Web3jSdkUtil web3jSdkUtil;
+
+    private final Map<String, AccountNonce> nonceMap = new ConcurrentHashMap<>();
+
+    /**
+     * 分配下一个nonce，首次使用时从链上pending状态初始化
+     * @param address
+     * @return
+     * @throws Exception
+     */
+    public BigInteger acquire(String address) throws Exception {
+        return acquire(address, 1);
+    }
+
+    /**
+     * 一次分配连续的count个nonce，返回第一个；分配的nonce在交易被节点接受或确定未发出后调用settle。
+     * 等待重新同步时阻塞到已分配的nonce全部结束，避免继续分配排在nonce空洞之后
+     * @param address
+     * @param count
+     * @return
+     * @throws Exception
+     */
+    public BigInteger acquire(String address, int count) throws Exception {
+        AccountNonce accountNonce = nonceMap.computeIfAbsent(address.toLowerCase(), k -> new AccountNonce());
+        synchronized (accountNonce) {
+            while (accountNonce.stale) {
+                accountNonce.wait();
+            }
+            if (accountNonce.next == null) {
+                accountNonce.next = web3jSdkUtil.getPendingTransactionCount(address);
+            }
+            BigInteger nonce = accountNonce.next;
+            accountNonce.next = nonce.add(BigInteger.valueOf(count));
+            accountNonce.outstanding += count;
+            return nonce;
+        }
+    }
+
+    /**
+     * 已分配的nonce有了结果(节点已接受或确定未发出)，没有未结束的nonce时执行延后的重新同步
+     * @param address
+     * @param count
+     */
+    public void settle(String address, int count) {
+        AccountNonce accountNonce = nonceMap.get(address.toLowerCase());
+        if (accountNonce != null) {
+            synchronized (accountNonce) {
+                accountNonce.outstanding = Math.max(0, accountNonce.outstanding - count);
+                if (accountNonce.outstanding == 0 && accountNonce.stale) {
+                    accountNonce.next = null;
+                    accountNonce.stale = false;
+                    accountNonce.notifyAll();
+                    log.info("nonce resync, address:{}", address);
+                }
+            }
+        }
+    }
+
+    /**
+     * 刚分配的nonce未发出即失败时退回；之后已分配了其他nonce时无法退回，改为重新同步
+     * @param address
+     * @param nonce 第一个nonce
+     * @param count
+     */
+    public void rollback(String address, BigInteger nonce, int count) {
+        AccountNonce accountNonce = nonceMap.get(address.toLowerCase());
+        if (accountNonce != null) {
+            synchronized (accountNonce) {
+                if (accountNonce.next != null && accountNonce.next.equals(nonce.add(BigInteger.valueOf(count)))) {
+                    accountNonce.next = nonce;
+                } else {
+                    accountNonce.stale = true;
+                }
+            }
+            settle(address, count);
+        }
+    }
+
+    /**
+     * 本地nonce失效，下次分配时重新从链上同步；该地址还有已分配未结束的nonce时延后到全部结束，
+     * 避免重新分配已签名待发送交易的nonce，期间的分配等待同步完成
+     * @param address
+     */
+    public void resync(String address) {
+        AccountNonce accountNonce = nonceMap.get(address.toLowerCase());
+        if (accountNonce != null) {
+            synchronized (accountNonce) {
+                if (accountNonce.outstanding > 0) {
+                    accountNonce.stale = true;
+                    return;
+                }
+                accountNonce.next = null;
+                accountNonce.stale = false;
+            }
+            log.info("nonce resync, address:{}", address);
+        }
+    }
+
+    /**
+     * 判断发送交易的错误是否由nonce不一致导致
+     * @param errorMessage
+     * @return
+     */
+    public boolean isNonceError(String errorMessage) {
+        if (errorMessage == null) {
+            return false;
+        }
+        String message = errorMessage.toLowerCase();
+        return message.contains(Constant.NONCE_TOO_LOW) || message.contains(Constant.ALREADY_KNOWN)
+                || message.contains(Constant.REPLACEMENT_UNDERPRICED);
+    }
+
+    private static class AccountNonce {
+        private BigInteger next;
+        /**
+         * 已分配、节点尚未接受的nonce数
+         */
+        private int outstanding;
+        /**
+         * 需要重新同步，等outstanding归零后执行，期间acquire等待
+         */
+        private boolean stale;
+    }
+}
@@ -0,0 +1,210 @@
+package io.ont.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * 待确认交易的收据：定时按交易hash批量轮询；订阅了新区块时每个区块查询一次区块收据，轮询降为evm.ws.poll.interval的兜底。
+ * 超时的交易仍可能落账，改为按evm.receipt.late.interval低频轮询，直到evm.receipt.late.timeout
+ */
+@Slf4j
+@Component
+public class ReceiptResolver {
+
+    @Autowired
+    private ConfigParam configParam;
+    @Autowired
+    private Web3jSdkUtil web3jSdkUtil;
+    @Autowired
+    private EvmMetrics evmMetrics;
+
+    private final Map<String, PendingReceipt> pendingMap = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+    private Timer receiptTimer;
+    private Counter pollCounter;
+    private Counter timeoutCounter;
+    private Counter blockCounter;
+    private Counter lateCounter;
+    private volatile boolean subscribed;
+    private long lastPollMillis;
+    private long lastLatePollMillis;
+
+    @PostConstruct
+    public void start() {
+        // 从登记到拿到收据的等待时间
+        receiptTimer = evmMetrics.remoteTimer(EvmMetrics.STAGE_TIMER, "stage", "receipt");
+        pollCounter = evmMetrics.counter("evm.receipt.poll");
+        timeoutCounter = evmMetrics.counter("evm.receipt.timeout");
+        blockCounter = evmMetrics.counter("evm.receipt.block");
+        lateCounter = evmMetrics.counter("evm.receipt.late.timeout");
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "receipt-resolver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> tick(false), configParam.EVM_RECEIPT_INTERVAL, configParam.EVM_RECEIPT_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 登记待确认交易，交易落账后future返回收据，超时返回null
+     * @param txHash
+     * @return
+     */
+    public CompletableFuture<TransactionReceipt> resolve(String txHash) {
+        long deadline = System.currentTimeMillis() + configParam.EVM_RECEIPT_TIMEOUT;
+        return pendingMap.computeIfAbsent(txHash, k -> new PendingReceipt(deadline, false)).future;
+    }
+
+    /**
+     * 登记已超时的交易，低频轮询，交易落账后future返回收据，仍超时返回null
+     * @param txHash
+     * @return
+     */
+    public CompletableFuture<TransactionReceipt> watch(String txHash) {
+        long deadline = System.currentTimeMillis() + configParam.EVM_RECEIPT_LATE_TIMEOUT;
+        return pendingMap.computeIfAbsent(txHash, k -> new PendingReceipt(deadline, true)).future;
+    }
+
+    public int getPendingCount() {
+        return pendingMap.size();
+    }
+
+    /**
+     * 新区块订阅是否正常，正常时按区块确认，轮询只做兜底
+     * @param subscribed
+     */
+    public void setSubscribed(boolean subscribed) {
+        this.subscribed = subscribed;
+    }
+
+    /**
+     * 新区块到达时查询区块收据，完成其中的待确认交易；查询失败或节点不支持时立即按交易hash轮询一次
+     * @param blockNumber
+     */
+    public void onBlock(long blockNumber) {
+        if (pendingMap.isEmpty()) {
+            return;
+        }
+        List<TransactionReceipt> receipts;
+        try {
+            receipts = web3jSdkUtil.getBlockReceipts(blockNumber);
+        } catch (Exception e) {
+            log.warn("get block receipts error, block:{}, error:{}", blockNumber, e.getMessage());
+            receipts = null;
+        }
+        if (receipts == null) {
+            pollNow();
+            return;
+        }
+        blockCounter.increment();
+        for (TransactionReceipt receipt : receipts) {
+            complete(receipt.getTransactionHash(), receipt);
+        }
+    }
+
+    /**
+     * 在轮询线程上立即按交易hash查询一次全部待确认交易
+     */
+    public void pollNow() {
+        scheduler.execute(() -> tick(true));
+    }
+
+    private void tick(boolean force) {
+        try {
+            if (pendingMap.isEmpty()) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            boolean poll = force || !subscribed || now - lastPollMillis >= configParam.EVM_WS_POLL_INTERVAL;
+            boolean latePoll = force || now - lastLatePollMillis >= configParam.EVM_RECEIPT_LATE_INTERVAL;
+            List<String> hashes = new ArrayList<>();
+            Iterator<Map.Entry<String, PendingReceipt>> iterator = pendingMap.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, PendingReceipt> entry = iterator.next();
+                PendingReceipt pending = entry.getValue();
+                if (pending.future.isDone()) {
+                    iterator.remove();
+                } else if (pending.deadline <= now) {
+                    // 超时未落账
+                    iterator.remove();
+                    log.warn("receipt {}timeout, hash:{}", pending.late ? "late " : "", entry.getKey());
+                    (pending.late ? lateCounter : timeoutCounter).increment();
+                    pending.future.complete(null);
+                } else if (pending.late ? latePoll : poll) {
+                    hashes.add(entry.getKey());
+                }
+            }
+            if (poll) {
+                lastPollMillis = now;
+            }
+            if (latePoll) {
+                lastLatePollMillis = now;
+            }
+            int batchSize = configParam.EVM_RECEIPT_BATCH_SIZE;
+            for (int from = 0; from < hashes.size(); from += batchSize) {
+                List<String> batch = hashes.subList(from, Math.min(from + batchSize, hashes.size()));
+                queryBatch(batch);
+            }
+        } catch (Throwable e) {
+            log.error("receipt resolver tick error", e);
+        }
+    }
+
+    private void queryBatch(List<String> hashes) {
+        pollCounter.increment(hashes.size());
+        Map<String, TransactionReceipt> receiptMap;
+        try {
+            receiptMap = web3jSdkUtil.getReceiptsByHash(hashes);
+        } catch (Exception e) {
+            // 本轮查询失败，下一轮重试
+            log.error("batch get receipt error, size:{}", hashes.size(), e);
+            return;
+        }
+        for (Map.Entry<String, TransactionReceipt> entry : receiptMap.entrySet()) {
+            complete(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void complete(String txHash, TransactionReceipt receipt) {
+        PendingReceipt pending = pendingMap.remove(txHash);
+        if (pending != null) {
+            EvmMetrics.record(receiptTimer, pending.createdNanos);
+            pending.future.complete(receipt);
+        }
+    }
+
+    private static class PendingReceipt {
+        private final long deadline;
+        private final boolean late;
+        private final long createdNanos = System.nanoTime();
+        private final CompletableFuture<TransactionReceipt> future = new CompletableFuture<>();
+
+        private PendingReceipt(long deadline, boolean late) {
+            this.deadline = deadline;
+            this.late = late;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package io.ont.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.ont.bean.OwnershipSnapshot;
+import io.ont.exception.EvmDemoException;
+import io.ont.exception.EvmLogLimitException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.methods.response.Log;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * 回填NFT合约的Transfer事件，得到区间内有变化的token的最终归属：把[起始区块, 最新区块]切成区块范围并发eth_getLogs，
+ * 全应用最多evm.backfill.parallelism个请求；节点报结果过多时把该范围对半拆分重试并缩小后续范围，成功后逐步放大到evm.backfill.range。
+ * 各范围的日志完成顺序不定，按(区块, logIndex)只保留每个token最后一次Transfer，日志处理完即丢弃；
+ * 结果占用的内存与区间内有变化的token数成正比
+ */
+@Slf4j
+@Component
+public class TransferBackfill {
+
+    @Autowired
+    private ConfigParam configParam;
+    @Autowired
+    private Web3jSdkUtil web3jSdkUtil;
+    @Autowired
+    private EvmMetrics evmMetrics;
+
+    private ExecutorService executor;
+    private Counter rangeCounter;
+    private Counter splitCounter;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(configParam.EVM_BACKFILL_PARALLELISM, r -> {
+            Thread thread = new Thread(r, "log-backfill-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        rangeCounter = evmMetrics.counter("evm.backfill.range");
+        splitCounter = evmMetrics.counter("evm.backfill.split");
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 从fromBlock回填到当前最新区块
+     * @param fromBlock
+     * @return 所有范围处理完后返回归属快照(只有changes)，任一范围重试后仍失败则异常结束
+     */
+    public CompletableFuture<OwnershipSnapshot> backfill(long fromBlock) {
+        BigInteger latest;
+        try {
+            latest = web3jSdkUtil.getLatestBlockNumber();
+        } catch (Exception e) {
+            throw new EvmDemoException("get latest block error: " + e.getMessage());
+        }
+        fromBlock = Math.max(0, fromBlock);
+        BackfillJob job = new BackfillJob(fromBlock, Math.max(fromBlock - 1, latest.longValue()));
+        for (int i = 0; i < configParam.EVM_BACKFILL_PARALLELISM; i++) {
+            job.spawn();
+        }
+        return job.future;
+    }
+
+    private class BackfillJob {
+        private final long fromBlock;
+        private final long toBlock;
+        private final long startNanos = System.nanoTime();
+        private final CompletableFuture<OwnershipSnapshot> future = new CompletableFuture<>();
+        private final Map<String, Transfer> transfers = new ConcurrentHashMap<>();
+        // 以下字段由this保护
+        private final Deque<long[]> splits = new ArrayDeque<>();
+        private long cursor;
+        private long range;
+        private int running;
+        private int ranges;
+
+        private BackfillJob(long fromBlock, long toBlock) {
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+            this.cursor = fromBlock;
+            this.range = Math.max(1, configParam.EVM_BACKFILL_RANGE);
+        }
+
+        /**
+         * 空闲时再启动一个拉取线程，拆分出新范围后调用
+         */
+        private void spawn() {
+            synchronized (this) {
+                if (running >= configParam.EVM_BACKFILL_PARALLELISM || future.isDone()) {
+                    return;
+                }
+                running++;
+            }
+            executor.execute(this::run);
+        }
+
+        private void run() {
+            long[] blockRange;
+            while ((blockRange = nextOrExit()) != null) {
+                try {
+                    fold(fetch(blockRange[0], blockRange[1]));
+                    grow();
+                } catch (EvmLogLimitException e) {
+                    if (blockRange[0] == blockRange[1]) {
+                        fail(new EvmDemoException("too many logs in block " + blockRange[0] + ": " + e.getMessage()));
+                    } else {
+                        split(blockRange[0], blockRange[1]);
+                        spawn();
+                    }
+                } catch (Exception e) {
+                    fail(e);
+                }
+            }
+        }
+
+        /**
+         * 取下一个范围：先取拆分出的范围，再按当前范围大小往后切；没有时退出并在最后一个线程退出时汇总结果
+         */
+        private synchronized long[] nextOrExit() {
+            if (!future.isDone()) {
+                if (!splits.isEmpty()) {
+                    return splits.pop();
+                }
+                if (cursor <= toBlock) {
+                    long[] blockRange = {cursor, Math.min(toBlock, cursor + range - 1)};
+                    cursor = blockRange[1] + 1;
+                    return blockRange;
+                }
+            }
+            running--;
+            if (running == 0 && !future.isDone()) {
+                complete();
+            }
+            return null;
+        }
+
+        private synchronized void split(long from, long to) {
+            splitCounter.increment();
+            long middle = from + (to - from) / 2;
+            splits.push(new long[]{middle + 1, to});
+            splits.push(new long[]{from, middle});
+            range = Math.max(1, Math.min(range, middle - from + 1));
+            log.debug("backfill range {}-{} too many logs, split, range:{}", from, to, range);
+        }
+
+        private synchronized void grow() {
+            ranges++;
+            range = Math.min(Math.max(1, configParam.EVM_BACKFILL_RANGE), range + Math.max(1, range / 4));
+        }
+
+        private List<Log> fetch(long from, long to) throws Exception {
+            rangeCounter.increment();
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    return web3jSdkUtil.getTransferLogs(configParam.NFT_CONTRACT, from, to);
+                } catch (EvmLogLimitException e) {
+                    throw e;
+                } catch (Exception e) {
+                    if (attempt >= configParam.EVM_BACKFILL_RETRIES || future.isDone()) {
+                        throw e;
+                    }
+                    log.warn("backfill range {}-{} error, retry:{}, error:{}", from, to, attempt + 1, e.getMessage());
+                    TimeUnit.MILLISECONDS.sleep(200L * (attempt + 1));
+                }
+            }
+        }
+
+        private void fold(List<Log> logs) {
+            for (Log txLog : logs) {
+                TransferEvent event = TransferEvent.decode(txLog);
+                if (event == null) {
+                    continue;
+                }
+                Transfer transfer = new Transfer(txLog.getBlockNumber().longValue(), txLog.getLogIndex().longValue(), event.getOwner());
+                transfers.merge(event.getNftId(), transfer, (current, update) -> update.isAfter(current) ? update : current);
+            }
+        }
+
+        private void fail(Exception e) {
+            log.error("backfill blocks {}-{} error", fromBlock, toBlock, e);
+            future.completeExceptionally(e);
+        }
+
+        private void complete() {
+            // 边转换边移除，不同时持有两份完整的结果
+            OwnershipSnapshot snapshot = new OwnershipSnapshot();
+            snapshot.setBlockNumber(toBlock);
+            Iterator<Map.Entry<String, Transfer>> iterator = transfers.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Transfer> entry = iterator.next();
+                snapshot.getChanges().put(entry.getKey(), entry.getValue().owner);
+                iterator.remove();
+            }
+            log.info("backfill blocks {}-{} done, ranges:{}, tokens:{}, cost:{}ms", fromBlock, toBlock, ranges,
+                    snapshot.getChanges().size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            future.complete(snapshot);
+        }
+    }
+
+    private static class Transfer {
+        private final long blockNumber;
+        private final long logIndex;
+        /**
+         * 销毁时为null
+         */
+        private final String owner;
+
+        private Transfer(long blockNumber, long logIndex, String owner) {
+            this.blockNumber = blockNumber;
+            this.logIndex = logIndex;
+            this.owner = owner;
+        }
+
+        private boolean isAfter(Transfer other) {
+            return blockNumber != other.blockNumber ? blockNumber > other.blockNumber : logIndex > other.logIndex;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package io.ont.utils;
+
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.utils.Numeric;
+
+import java.util.List;
+
+
+/**
+ * NFT合约Transfer(from, to, tokenId)事件，三个参数都是indexed，从topics解析；增量索引和全量回填共用
+ */
+public final class TransferEvent {
+    private final String nftId;
+    private final String owner;
+
+    private TransferEvent(String nftId, String owner) {
+        this.nftId = nftId;
+        this.owner = owner;
+    }
+
+    /**
+     * 解析Transfer事件日志
+     * @param txLog
+     * @return 不是Transfer事件时返回null
+     */
+    public static TransferEvent decode(Log txLog) {
+        List<String> topics = txLog.getTopics();
+        if (topics == null || topics.size() < 4 || !Constant.TRANSFER_EVENT_HASH.equals(topics.get(0))) {
+            return null;
+        }
+        String hex = Numeric.cleanHexPrefix(topics.get(2));
+        String to = "0x" + hex.substring(hex.length() - 40).toLowerCase();
+        return new TransferEvent(Numeric.toBigInt(topics.get(3)).toString(), Constant.ZERO_ADDRESS.equals(to) ? null : to);
+    }
+
+    public String getNftId() {
+        return nftId;
+    }
+
+    /**
+     * 转入地址(小写)，销毁时为null
+     * @return
+     */
+    public String getOwner() {
+        return owner;
+    }
+}
@@ -0,0 +1,340 @@
+package io.ont.utils;
+
+import com.alibaba.fastjson.JSON;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.methods.response.Log;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * 跟随链上NFT合约的Transfer事件，在本地维护tokenId->owner及owner->tokenIds索引；
+ * 索引与检查点定期落盘，重启后从检查点继续；发现检查点区块hash变化时回滚reorg.depth个区块重新同步；
+ * 落后最新区块超过evm.indexer.max.lag或本服务对该token的交易尚未被索引时，查询不走本地索引
+ */
+@Slf4j
+@Component
+public class TransferIndexer {
+    private static final long PERSIST_INTERVAL = 10000;
+
+    @Autowired
+    private ConfigParam configParam;
+    @Autowired
+    private Web3jSdkUtil web3jSdkUtil;
+    @Autowired
+    private BlockTracker blockTracker;
+
+    private final Map<String, LocalWrite> localWrites = new ConcurrentHashMap<>();
+    private final Map<String, String> ownerMap = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> tokenMap = new ConcurrentHashMap<>();
+    private final Deque<TransferUndo> undoLog = new ArrayDeque<>();
+
+    private volatile long checkpoint;
+    private String checkpointHash;
+    private volatile boolean synced;
+    private long lastPersistTime;
+    private boolean dirty;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        if (!configParam.EVM_INDEXER_ENABLED) {
+            return;
+        }
+        checkpoint = configParam.EVM_INDEXER_START_BLOCK - 1;
+        load();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "transfer-indexer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::tick, 0, configParam.EVM_INDEXER_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        persist();
+    }
+
+    /**
+     * 索引已追上链上最新区块(落后不超过evm.indexer.max.lag)时才可用于查询
+     * @return
+     */
+    public boolean isSynced() {
+        return synced && blockTracker.getLatestBlock() - checkpoint <= configParam.EVM_INDEXER_MAX_LAG;
+    }
+
+    /**
+     * 本服务的交易对该token的修改是否已被索引，未被索引时应查询合约
+     * @param nftId
+     * @return
+     */
+    public boolean isIndexed(String nftId) {
+        LocalWrite write = localWrites.get(nftId);
+        if (write == null) {
+            return true;
+        }
+        if (write.inflight == 0 && write.blockNumber <= checkpoint) {
+            localWrites.remove(nftId, write);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 提交会改变token归属的交易前调用
+     * @param nftId
+     */
+    public void beginWrite(String nftId) {
+        localWrites.compute(nftId, (k, write) -> write == null ? new LocalWrite(1, -1) : new LocalWrite(write.inflight + 1, write.blockNumber));
+    }
+
+    /**
+     * 交易结束后调用，落账的交易在索引到其区块之前仍视为未索引
+     * @param nftId
+     * @param blockNumber 交易所在区块，未落账时为null
+     */
+    public void endWrite(String nftId, Long blockNumber) {
+        localWrites.compute(nftId, (k, write) -> {
+            int inflight = write == null ? 0 : Math.max(0, write.inflight - 1);
+            long block = Math.max(write == null ? -1 : write.blockNumber, blockNumber == null ? -1 : blockNumber);
+            return inflight == 0 && block <= checkpoint ? null : new LocalWrite(inflight, block);
+        });
+    }
+
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * 全部token归属的只读实时视图，遍历时弱一致
+     * @return
+     */
+    public Map<String, String> getOwners() {
+        return Collections.unmodifiableMap(ownerMap);
+    }
+
+    public String getOwner(String nftId) {
+        return ownerMap.get(nftId);
+    }
+
+    public List<String> getTokens(String owner) {
+        Set<String> tokens = tokenMap.get(owner.toLowerCase());
+        if (tokens == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    private void tick() {
+        try {
+            long latest = web3jSdkUtil.getLatestBlockNumber().longValue();
+            blockTracker.onBlock(latest);
+            if (latest - checkpoint > configParam.EVM_INDEXER_MAX_LAG) {
+                synced = false;
+            }
+            if (checkpointHash != null && !checkpointHash.equals(web3jSdkUtil.getBlockHash(checkpoint))) {
+                rollback();
+            }
+            while (checkpoint < latest) {
+                long from = checkpoint + 1;
+                long to = Math.min(latest, from + configParam.EVM_INDEXER_RANGE - 1);
+                // 先取区块hash再取日志：两次调用之间发生reorg时日志来自新链，下次比对检查点hash即可发现
+                String toHash = web3jSdkUtil.getBlockHash(to);
+                List<Log> logs = web3jSdkUtil.getTransferLogs(configParam.NFT_CONTRACT, from, to);
+                if (toHash == null || !isSameChain(logs, to, toHash)) {
+                    log.warn("block {} changed while indexing, retry next tick", to);
+                    return;
+                }
+                logs.sort(Comparator.comparing(Log::getBlockNumber).thenComparing(Log::getLogIndex));
+                for (Log txLog : logs) {
+                    apply(txLog);
+                }
+                checkpointHash = toHash;
+                checkpoint = to;
+                dirty = true;
+                trimUndoLog();
+            }
+            synced = true;
+            if (dirty && System.currentTimeMillis() - lastPersistTime >= PERSIST_INTERVAL) {
+                persist();
+            }
+        } catch (Throwable e) {
+            log.error("transfer indexer tick error", e);
+        }
+    }
+
+    private boolean isSameChain(List<Log> logs, long blockNumber, String blockHash) {
+        for (Log txLog : logs) {
+            if (txLog.getBlockNumber().longValue() == blockNumber && txLog.getBlockHash() != null && !blockHash.equalsIgnoreCase(txLog.getBlockHash())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void apply(Log txLog) {
+        TransferEvent event = TransferEvent.decode(txLog);
+        if (event == null) {
+            return;
+        }
+        String previous = setOwner(event.getNftId(), event.getOwner());
+        undoLog.addLast(new TransferUndo(txLog.getBlockNumber().longValue(), event.getNftId(), previous));
+    }
+
+    /**
+     * 更新token归属，返回之前的owner
+     */
+    private String setOwner(String nftId, String owner) {
+        String previous = owner == null ? ownerMap.remove(nftId) : ownerMap.put(nftId, owner);
+        if (previous != null) {
+            Set<String> tokens = tokenMap.get(previous);
+            if (tokens != null) {
+                tokens.remove(nftId);
+                if (tokens.isEmpty()) {
+                    tokenMap.remove(previous, tokens);
+                }
+            }
+        }
+        if (owner != null) {
+            tokenMap.computeIfAbsent(owner, k -> ConcurrentHashMap.newKeySet()).add(nftId);
+        }
+        return previous;
+    }
+
+    private void rollback() throws Exception {
+        long target = Math.max(configParam.EVM_INDEXER_START_BLOCK - 1, checkpoint - configParam.EVM_INDEXER_REORG_DEPTH);
+        log.warn("chain reorg detected at block:{}, rollback to:{}", checkpoint, target);
+        while (!undoLog.isEmpty() && undoLog.peekLast().getBlockNumber() > target) {
+            TransferUndo undo = undoLog.pollLast();
+            setOwner(undo.getNftId(), undo.getPreviousOwner());
+        }
+        checkpoint = target;
+        checkpointHash = target >= 0 ? web3jSdkUtil.getBlockHash(target) : null;
+        synced = false;
+        dirty = true;
+    }
+
+    private void trimUndoLog() {
+        long keepFrom = checkpoint - configParam.EVM_INDEXER_REORG_DEPTH;
+        while (!undoLog.isEmpty() && undoLog.peekFirst().getBlockNumber() <= keepFrom) {
+            undoLog.pollFirst();
+        }
+    }
+
+    private void load() {
+        File file = new File(configParam.EVM_INDEXER_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            IndexSnapshot snapshot = JSON.parseObject(content, IndexSnapshot.class);
+            for (Map.Entry<String, String> entry : snapshot.getOwners().entrySet()) {
+                setOwner(entry.getKey(), entry.getValue());
+            }
+            undoLog.addAll(snapshot.getUndoLog());
+            checkpoint = snapshot.getCheckpoint();
+            checkpointHash = snapshot.getCheckpointHash();
+            log.info("transfer index loaded, checkpoint:{}, tokens:{}", checkpoint, ownerMap.size());
+        } catch (Exception e) {
+            log.error("load transfer index error, rebuild from start block", e);
+            ownerMap.clear();
+            tokenMap.clear();
+            undoLog.clear();
+        }
+    }
+
+    private void persist() {
+        if (!dirty) {
+            return;
+        }
+        IndexSnapshot snapshot = new IndexSnapshot();
+        snapshot.setCheckpoint(checkpoint);
+        snapshot.setCheckpointHash(checkpointHash);
+        snapshot.setOwners(new HashMap<>(ownerMap));
+        snapshot.setUndoLog(new ArrayList<>(undoLog));
+        try {
+            File file = new File(configParam.EVM_INDEXER_FILE);
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            File tmp = new File(file.getPath() + ".tmp");
+            Files.write(tmp.toPath(), JSON.toJSONString(snapshot).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+            lastPersistTime = System.currentTimeMillis();
+        } catch (Exception e) {
+            log.error("persist transfer index error", e);
+        }
+    }
+
+    private static class LocalWrite {
+        private final int inflight;
+        /**
+         * 已落账交易的最大区块高度
+         */
+        private final long blockNumber;
+
+        private LocalWrite(int inflight, long blockNumber) {
+            this.inflight = inflight;
+            this.blockNumber = blockNumber;
+        }
+    }
+
+    @Data
+    public static class IndexSnapshot {
+        private long checkpoint;
+        private String checkpointHash;
+        private Map<String, String> owners = new HashMap<>();
+        private List<TransferUndo> undoLog = new ArrayList<>();
+    }
+
+    @Data
+    public static class TransferUndo {
+        private long blockNumber;
+        private String nftId;
+        private String previousOwner;
+
+        public TransferUndo() {
+        }
+
+        public TransferUndo(long blockNumber, String nftId, String previousOwner) {
+            this.blockNumber = blockNumber;
+            this.nftId = nftId;
+            this.previousOwner = previousOwner;
+        }
+    }
+}
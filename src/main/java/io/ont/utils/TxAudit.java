@@ -0,0 +1,111 @@
+package io.ont.utils;
+
+import com.alibaba.fastjson.JSON;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.math.BigInteger;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * 交易审计日志：每个阶段一行key=value记录，写入evm.audit logger，由logback.xml中的异步appender落盘(队列长度和丢弃策略在其中配置)；
+ * 完整收据只按evm.audit.receipt.sample比例抽样输出，执行失败的收据总是输出
+ */
+@Component
+public class TxAudit {
+    private static final Logger AUDIT = LoggerFactory.getLogger("evm.audit");
+
+    @Autowired
+    private ConfigParam configParam;
+
+    /**
+     * 节点已接受交易
+     * @param txHash
+     * @param function
+     * @param address
+     * @param nonce
+     * @param submitNanos 提交到通道的时间
+     */
+    public void sent(String txHash, String function, String address, BigInteger nonce, long submitNanos) {
+        if (!enabled()) {
+            return;
+        }
+        AUDIT.info(record("sent", txHash, function)
+                .append(" from=").append(address)
+                .append(" nonce=").append(nonce)
+                .append(" cost=").append(millisSince(submitNanos)).append("ms")
+                .toString());
+    }
+
+    /**
+     * 交易未被节点接受
+     * @param txHash
+     * @param function
+     * @param address
+     * @param nonce
+     * @param error
+     * @param submitNanos
+     */
+    public void rejected(String txHash, String function, String address, BigInteger nonce, String error, long submitNanos) {
+        if (!enabled()) {
+            return;
+        }
+        AUDIT.info(record("rejected", txHash, function)
+                .append(" from=").append(address)
+                .append(" nonce=").append(nonce)
+                .append(" cost=").append(millisSince(submitNanos)).append("ms")
+                .append(" error=\"").append(error).append('"')
+                .toString());
+    }
+
+    /**
+     * 拿到收据或等待超时(receipt为null)
+     * @param txHash
+     * @param function
+     * @param receipt
+     * @param pendingNanos 开始等待收据的时间
+     */
+    public void receipt(String txHash, String function, TransactionReceipt receipt, long pendingNanos) {
+        if (!enabled()) {
+            return;
+        }
+        if (receipt == null) {
+            AUDIT.info(record("timeout", txHash, function)
+                    .append(" wait=").append(millisSince(pendingNanos)).append("ms")
+                    .toString());
+            return;
+        }
+        boolean success = Constant.STATUS_SUCCESS.equals(receipt.getStatus());
+        AUDIT.info(record("confirmed", txHash, function)
+                .append(" status=").append(success ? Constant.TX_SUCCESS : Constant.TX_FAILED)
+                .append(" block=").append(receipt.getBlockNumberRaw() == null ? null : receipt.getBlockNumber())
+                .append(" gasUsed=").append(receipt.getGasUsedRaw() == null ? null : receipt.getGasUsed())
+                .append(" wait=").append(millisSince(pendingNanos)).append("ms")
+                .toString());
+        if (!success || sampled()) {
+            AUDIT.info(record("receipt", txHash, function).append(' ').append(JSON.toJSONString(receipt)).toString());
+        }
+    }
+
+    private boolean enabled() {
+        return configParam.EVM_AUDIT_ENABLED && AUDIT.isInfoEnabled();
+    }
+
+    private boolean sampled() {
+        double sample = configParam.EVM_AUDIT_RECEIPT_SAMPLE;
+        return sample >= 1 || (sample > 0 && ThreadLocalRandom.current().nextDouble() < sample);
+    }
+
+    private static StringBuilder record(String stage, String txHash, String function) {
+        return new StringBuilder(160).append("stage=").append(stage).append(" tx=").append(txHash).append(" fn=").append(function);
+    }
+
+    private static double millisSince(long startNanos) {
+        return Math.round(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos) / 10.0) / 100.0;
+    }
+}
@@ -0,0 +1,468 @@
+package io.ont.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.ont.bean.JournalEntry;
+import io.ont.exception.EvmBusyException;
+import io.ont.exception.EvmDemoException;
+import io.ont.store.TxJournal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.protocol.core.methods.response.EthSendTransaction;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+
+/**
+ * 交易通道：按发送地址hash到固定数量的通道，同一地址的交易始终进入同一通道，不同通道并行。
+ * 每个通道由两个线程组成：通道线程按提交顺序分配nonce、构造、签名并写交易日志；
+ * 发送线程按同样顺序把已签名的交易合并为JSON-RPC batch发送，一批未返回时通道线程继续签名后续交易，
+ * 已签名未被节点接受的交易数不超过evm.lane.inflight。同一地址的nonce分配与发送顺序由单线程消费保证
+ */
+@Slf4j
+@Component
+public class TxLanes {
+    /**
+     * 停止时等待通道线程退出的时间
+     */
+    private static final long STOP_WAIT_MILLIS = 5000;
+
+    @Autowired
+    private ConfigParam configParam;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private EvmMetrics evmMetrics;
+    @Autowired
+    private Web3jSdkUtil web3jSdkUtil;
+    @Autowired
+    private NonceManager nonceManager;
+    @Autowired
+    private GasOracle gasOracle;
+    @Autowired
+    private TxSigner txSigner;
+    @Autowired
+    private TxJournal txJournal;
+    @Autowired
+    private TxAudit txAudit;
+
+    private Lane[] lanes;
+    private volatile boolean running;
+
+    private Timer queueTimer;
+    private Timer nonceTimer;
+    private Timer encodeTimer;
+    private Timer signTimer;
+    private Timer journalTimer;
+    private Timer sendTimer;
+    private Timer submitTimer;
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void start() {
+        int count = configParam.EVM_LANE_COUNT > 0 ? configParam.EVM_LANE_COUNT : Runtime.getRuntime().availableProcessors();
+        queueTimer = evmMetrics.localTimer(EvmMetrics.STAGE_TIMER, "stage", "queue");
+        nonceTimer = evmMetrics.localTimer(EvmMetrics.STAGE_TIMER, "stage", "nonce");
+        encodeTimer = evmMetrics.localTimer(EvmMetrics.STAGE_TIMER, "stage", "encode");
+        signTimer = evmMetrics.localTimer(EvmMetrics.STAGE_TIMER, "stage", "sign");
+        journalTimer = evmMetrics.localTimer(EvmMetrics.STAGE_TIMER, "stage", "journal");
+        sendTimer = evmMetrics.remoteTimer(EvmMetrics.STAGE_TIMER, "stage", "send");
+        // 从提交到节点接受交易，包含排队和nonce冲突后的重试
+        submitTimer = evmMetrics.remoteTimer(EvmMetrics.STAGE_TIMER, "stage", "submit");
+        rejectedCounter = evmMetrics.counter("evm.admission.rejected", "class", "lane");
+        running = true;
+        lanes = new Lane[count];
+        for (int i = 0; i < count; i++) {
+            lanes[i] = new Lane(i);
+        }
+        meterRegistry.gauge("evm.lane.queue", lanes, ls -> {
+            int size = 0;
+            for (Lane lane : ls) {
+                size += lane.tasks.size();
+            }
+            return size;
+        });
+        log.info("tx lanes started, lanes:{}, inflight:{}", count, configParam.EVM_LANE_INFLIGHT);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Lane lane : lanes) {
+            lane.signThread.interrupt();
+            lane.sendThread.interrupt();
+        }
+        for (Lane lane : lanes) {
+            lane.signThread.join(STOP_WAIT_MILLIS);
+            lane.sendThread.join(STOP_WAIT_MILLIS);
+            lane.drain();
+        }
+    }
+
+    /**
+     * 提交单笔交易，nonce冲突时重新分配nonce重试一次
+     * @param function
+     * @param params
+     * @param address
+     * @param credentials
+     * @return 节点接受后返回交易hash
+     * @throws EvmBusyException 通道队列已满
+     */
+    public CompletableFuture<String> submit(String function, List<Type> params, String address, Credentials credentials) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        submit(new Task(function, Collections.singletonList(params), address, credentials, Collections.singletonList(future), true));
+        return future;
+    }
+
+    /**
+     * 提交同一地址的一批交易，分配连续nonce、并行签名，结果按参数顺序返回；批量交易不重试
+     * @param function
+     * @param paramsList
+     * @param address
+     * @param credentials
+     * @return
+     */
+    public List<CompletableFuture<String>> submitBatch(String function, List<List<Type>> paramsList, String address, Credentials credentials) {
+        List<CompletableFuture<String>> futures = new ArrayList<>(paramsList.size());
+        for (int i = 0; i < paramsList.size(); i++) {
+            futures.add(new CompletableFuture<>());
+        }
+        submit(new Task(function, paramsList, address, credentials, futures, false));
+        return futures;
+    }
+
+    private void submit(Task task) {
+        Lane lane = lane(task.address);
+        if (!running) {
+            task.fail(new EvmDemoException("tx lanes stopped"));
+        } else if (lane.tasks.size() >= configParam.EVM_LANE_QUEUE_SIZE) {
+            // 还未分配nonce，直接拒绝
+            rejectedCounter.increment();
+            throw new EvmBusyException("tx lane queue full");
+        } else {
+            lane.tasks.add(task);
+        }
+    }
+
+    private Lane lane(String address) {
+        int hash = address.toLowerCase().hashCode();
+        return lanes[Math.floorMod(hash ^ (hash >>> 16), lanes.length)];
+    }
+
+    private static JournalEntry journalEntry(String txHash, String function, String address, String txHex) {
+        JournalEntry entry = new JournalEntry();
+        entry.setTxHash(txHash);
+        entry.setFunction(function);
+        entry.setAddress(address);
+        entry.setTxHex(txHex);
+        entry.setTime(System.currentTimeMillis());
+        return entry;
+    }
+
+    private static String messageOf(Throwable e) {
+        Throwable cause = e.getCause() != null ? e.getCause() : e;
+        return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
+
+    private class Lane {
+        /**
+         * 容量在提交时检查，重试的交易不受容量限制，避免发送线程阻塞；重试的交易放到队首，先于后续交易分配nonce
+         */
+        private final BlockingDeque<Task> tasks = new LinkedBlockingDeque<>();
+        private final BlockingQueue<SendItem> sendQueue = new LinkedBlockingQueue<>();
+        /**
+         * 本批中nonce冲突需要重试的交易，只由发送线程访问
+         */
+        private final List<Task> retries = new ArrayList<>();
+        private final Semaphore inflight = new Semaphore(configParam.EVM_LANE_INFLIGHT);
+        private final Thread signThread;
+        private final Thread sendThread;
+
+        private Lane(int index) {
+            signThread = new Thread(this::signLoop, "tx-lane-" + index);
+            signThread.setDaemon(true);
+            signThread.start();
+            sendThread = new Thread(this::sendLoop, "tx-lane-send-" + index);
+            sendThread.setDaemon(true);
+            sendThread.start();
+        }
+
+        private void signLoop() {
+            while (running) {
+                Task task;
+                try {
+                    task = tasks.take();
+                } catch (InterruptedException e) {
+                    break;
+                }
+                EvmMetrics.record(queueTimer, task.createdNanos);
+                // 批量交易超过并发上限时按上限计，避免永远拿不到许可
+                int permits = Math.min(task.size(), configParam.EVM_LANE_INFLIGHT);
+                try {
+                    inflight.acquire(permits);
+                } catch (InterruptedException e) {
+                    // 停止时放回队列，由drain统一失败
+                    tasks.addFirst(task);
+                    break;
+                }
+                try {
+                    prepare(task, permits);
+                } catch (InterruptedException e) {
+                    // 停止时在等待nonce重新同步，还未分配nonce
+                    inflight.release(permits);
+                    tasks.addFirst(task);
+                    break;
+                } catch (Throwable e) {
+                    log.error("prepare transaction error, function:{}, address:{}", task.function, task.address, e);
+                    inflight.release(permits);
+                    task.fail(e);
+                }
+            }
+        }
+
+        /**
+         * 分配nonce、构造、签名、写交易日志，按顺序交给发送线程
+         */
+        private void prepare(Task task, int permits) throws Exception {
+            int size = task.size();
+            long start = System.nanoTime();
+            BigInteger firstNonce = nonceManager.acquire(task.address, size);
+            EvmMetrics.record(nonceTimer, start);
+            List<String> txHexes;
+            try {
+                start = System.nanoTime();
+                BigInteger gasPrice = gasOracle.getGasPrice();
+                List<RawTransaction> transactions = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    List<Type> params = task.paramsList.get(i);
+                    BigInteger gasLimit = gasOracle.getGasLimit(configParam.NFT_CONTRACT, task.address, task.function, params);
+                    transactions.add(web3jSdkUtil.createEvmTransaction(configParam.NFT_CONTRACT, task.function,
+                            firstNonce.add(BigInteger.valueOf(i)), params, gasPrice, gasLimit));
+                }
+                EvmMetrics.record(encodeTimer, start);
+                // 通道数按CPU核数设置，单笔交易直接在通道线程签名；批量交易由签名线程池并行签名
+                start = System.nanoTime();
+                txHexes = size == 1
+                        ? Collections.singletonList(txSigner.signInline(transactions.get(0), task.credentials))
+                        : txSigner.signAll(transactions, task.credentials);
+                EvmMetrics.record(signTimer, start);
+            } catch (Exception e) {
+                // nonce已分配但交易未发出，同一地址只在本通道分配nonce，此时还没有后续分配，直接退回
+                nonceManager.rollback(task.address, firstNonce, size);
+                throw e;
+            }
+            List<JournalEntry> entries = new ArrayList<>(size);
+            for (String txHex : txHexes) {
+                entries.add(journalEntry(Hash.sha3(txHex), task.function, task.address, txHex));
+            }
+            CompletableFuture<Void> journalFuture = txJournal.sent(entries);
+            for (int i = 0; i < size; i++) {
+                sendQueue.add(new SendItem(task, i, firstNonce.add(BigInteger.valueOf(i)), entries.get(i), journalFuture, i == 0 ? permits : 0));
+            }
+        }
+
+        private void sendLoop() {
+            List<SendItem> batch = new ArrayList<>();
+            while (running) {
+                try {
+                    batch.add(sendQueue.take());
+                } catch (InterruptedException e) {
+                    break;
+                }
+                sendQueue.drainTo(batch, configParam.EVM_TX_BATCH_SIZE - 1);
+                try {
+                    send(batch);
+                } catch (Throwable e) {
+                    log.error("send lane batch error, size:{}", batch.size(), e);
+                    retries.clear();
+                    for (SendItem item : batch) {
+                        item.complete(null, e);
+                    }
+                } finally {
+                    for (SendItem item : batch) {
+                        nonceManager.settle(item.task.address, 1);
+                        inflight.release(item.permits);
+                    }
+                    batch.clear();
+                    // 重试的交易重新分配nonce时等待延后的重新同步，按原顺序放回队首
+                    for (int i = retries.size() - 1; i >= 0; i--) {
+                        tasks.addFirst(retries.get(i));
+                    }
+                    retries.clear();
+                }
+            }
+        }
+
+        /**
+         * 停止后通道中剩余的交易：未分配nonce的直接失败；已签名未发出的交易不会再发送，日志标记失败
+         */
+        private void drain() {
+            EvmDemoException error = new EvmDemoException("tx lanes stopped");
+            List<Task> pending = new ArrayList<>();
+            tasks.drainTo(pending);
+            for (Task task : pending) {
+                task.fail(error);
+            }
+            List<SendItem> unsent = new ArrayList<>();
+            sendQueue.drainTo(unsent);
+            for (SendItem item : unsent) {
+                txJournal.resolved(item.entry.getTxHash(), Constant.TX_FAILED, null);
+                item.complete(null, error);
+            }
+        }
+
+        /**
+         * 一批交易一次batch请求，节点按顺序处理，同一地址的交易按nonce顺序到达
+         */
+        private void send(List<SendItem> batch) {
+            // 发送前交易日志必须已落盘；同一通道的日志按顺序写入，等最后一条即可
+            long start = System.nanoTime();
+            try {
+                batch.get(batch.size() - 1).journalFuture.join();
+            } catch (Throwable e) {
+                log.error("tx journal error, size:{}", batch.size(), e);
+                for (SendItem item : batch) {
+                    // 未发送的交易不会上链
+                    txJournal.resolved(item.entry.getTxHash(), Constant.TX_FAILED, null);
+                    nonceManager.resync(item.task.address);
+                    item.complete(null, e);
+                }
+                return;
+            }
+            EvmMetrics.record(journalTimer, start);
+            List<String> txHexes = new ArrayList<>(batch.size());
+            for (SendItem item : batch) {
+                txHexes.add(item.entry.getTxHex());
+            }
+            start = System.nanoTime();
+            List<EthSendTransaction> sends;
+            try {
+                sends = web3jSdkUtil.sendEvmTransactions(txHexes);
+            } catch (Exception e) {
+                log.error("send transactions error, size:{}", batch.size(), e);
+                for (SendItem item : batch) {
+                    if (e instanceof EvmBusyException) {
+                        // 被准入限制拒绝的交易没有发出
+                        txJournal.resolved(item.entry.getTxHash(), Constant.TX_FAILED, null);
+                    }
+                    // 其他错误时节点可能已收到交易，日志保持未完结，重启时重新广播
+                    nonceManager.resync(item.task.address);
+                    item.complete(null, e);
+                }
+                return;
+            } finally {
+                EvmMetrics.record(sendTimer, start);
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                SendItem item = batch.get(i);
+                EthSendTransaction send = sends.get(i);
+                if (send == null) {
+                    nonceManager.resync(item.task.address);
+                    item.complete(null, new EvmDemoException("no response"));
+                } else if (send.getError() != null) {
+                    String message = send.getError().getMessage();
+                    // 节点拒绝的交易不会上链
+                    txJournal.resolved(item.entry.getTxHash(), Constant.TX_FAILED, null);
+                    nonceManager.resync(item.task.address);
+                    if (item.task.retryable && nonceManager.isNonceError(message)) {
+                        // 本地nonce与链上不一致，重新同步后在同一通道重试一次
+                        log.warn("nonce conflict, address:{}, error:{}", item.task.address, message);
+                        retries.add(item.task.retry());
+                    } else {
+                        item.complete(null, new EvmDemoException(message));
+                    }
+                } else {
+                    item.complete(send.getTransactionHash(), null);
+                }
+            }
+        }
+    }
+
+    private class Task {
+        private final String function;
+        private final List<List<Type>> paramsList;
+        private final String address;
+        private final Credentials credentials;
+        private final List<CompletableFuture<String>> futures;
+        private final boolean retryable;
+        private final long createdNanos = System.nanoTime();
+        private long submitNanos = createdNanos;
+
+        private Task(String function, List<List<Type>> paramsList, String address, Credentials credentials,
+                     List<CompletableFuture<String>> futures, boolean retryable) {
+            this.function = function;
+            this.paramsList = paramsList;
+            this.address = address;
+            this.credentials = credentials;
+            this.futures = futures;
+            this.retryable = retryable;
+        }
+
+        private int size() {
+            return paramsList.size();
+        }
+
+        private Task retry() {
+            Task retry = new Task(function, paramsList, address, credentials, futures, false);
+            retry.submitNanos = submitNanos;
+            return retry;
+        }
+
+        private void fail(Throwable e) {
+            EvmDemoException error = e instanceof EvmDemoException ? (EvmDemoException) e : new EvmDemoException(messageOf(e));
+            for (CompletableFuture<String> future : futures) {
+                future.completeExceptionally(error);
+            }
+        }
+    }
+
+    private class SendItem {
+        private final Task task;
+        private final int index;
+        private final BigInteger nonce;
+        private final JournalEntry entry;
+        private final CompletableFuture<Void> journalFuture;
+        private final int permits;
+
+        private SendItem(Task task, int index, BigInteger nonce, JournalEntry entry, CompletableFuture<Void> journalFuture, int permits) {
+            this.task = task;
+            this.index = index;
+            this.nonce = nonce;
+            this.entry = entry;
+            this.journalFuture = journalFuture;
+            this.permits = permits;
+        }
+
+        private void complete(String txHash, Throwable e) {
+            CompletableFuture<String> future = task.futures.get(index);
+            if (future.isDone()) {
+                return;
+            }
+            EvmMetrics.record(submitTimer, task.submitNanos);
+            if (e == null) {
+                txAudit.sent(txHash, task.function, task.address, nonce, task.submitNanos);
+                future.complete(txHash);
+            } else {
+                txAudit.rejected(entry.getTxHash(), task.function, task.address, nonce, messageOf(e), task.submitNanos);
+                future.completeExceptionally(e instanceof EvmDemoException ? e : new EvmDemoException(messageOf(e)));
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package io.ont.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.ont.exception.EvmDemoException;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.crypto.digests.KeccakDigest;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.signers.HMacDSAKCalculator;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.Sign;
+import org.web3j.crypto.TransactionEncoder;
+import org.web3j.crypto.transaction.type.TransactionType;
+import org.web3j.rlp.RlpEncoder;
+import org.web3j.rlp.RlpList;
+import org.web3j.utils.Numeric;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * 交易签名：在按CPU核数设置的有界线程池中完成EIP-155签名并转为16进制，单笔与批量写入共用；
+ * recId由签名点R直接得出，不再像Sign.signMessage那样逐个尝试公钥恢复；签名结果与TransactionEncoder一致
+ */
+@Slf4j
+@Component
+public class TxSigner {
+    private static final BigInteger N = Sign.CURVE_PARAMS.getN();
+    private static final BigInteger HALF_N = N.shiftRight(1);
+    private static final ECPoint G = Sign.CURVE_PARAMS.getG();
+    private static final FixedPointCombMultiplier MULTIPLIER = new FixedPointCombMultiplier();
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<KeccakDigest> KECCAK = ThreadLocal.withInitial(() -> new KeccakDigest(256));
+    private static final ThreadLocal<char[]> HEX_BUFFER = ThreadLocal.withInitial(() -> new char[1024]);
+
+    @Autowired
+    private ConfigParam configParam;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ThreadPoolExecutor signExecutor;
+    private int threads;
+    private Counter signedCounter;
+
+    @PostConstruct
+    public void start() {
+        threads = configParam.EVM_SIGN_THREADS > 0 ? configParam.EVM_SIGN_THREADS : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        // 队列满时由提交线程自己签名，形成背压
+        signExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(configParam.EVM_SIGN_QUEUE_SIZE), r -> {
+            Thread thread = new Thread(r, "tx-signer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        signedCounter = meterRegistry.counter("evm.sign.count");
+        meterRegistry.gauge("evm.sign.queue", signExecutor.getQueue(), q -> q.size());
+        log.info("tx signer started, threads:{}", threads);
+    }
+
+    @PreDestroy
+    public void stop() {
+        signExecutor.shutdown();
+    }
+
+    /**
+     * 签名单笔交易
+     * @param transaction
+     * @param credentials
+     * @return 签名后交易的16进制
+     */
+    public String sign(RawTransaction transaction, Credentials credentials) {
+        return join(signAsync(transaction, credentials));
+    }
+
+    /**
+     * 在调用线程中签名，供已按CPU核数分配的线程(如交易通道)使用，省去一次线程切换
+     * @param transaction
+     * @param credentials
+     * @return
+     */
+    public String signInline(RawTransaction transaction, Credentials credentials) {
+        return signToHex(transaction, credentials);
+    }
+
+    public CompletableFuture<String> signAsync(RawTransaction transaction, Credentials credentials) {
+        return CompletableFuture.supplyAsync(() -> signToHex(transaction, credentials), signExecutor);
+    }
+
+    /**
+     * 批量签名，按线程数分段并行，结果按参数顺序返回
+     * @param transactions
+     * @param credentials
+     * @return
+     */
+    public List<String> signAll(List<RawTransaction> transactions, Credentials credentials) {
+        int size = transactions.size();
+        String[] signed = new String[size];
+        int segment = Math.max(1, (size + threads - 1) / threads);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int from = 0; from < size; from += segment) {
+            int start = from;
+            int end = Math.min(from + segment, size);
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (int i = start; i < end; i++) {
+                    signed[i] = signToHex(transactions.get(i), credentials);
+                }
+            }, signExecutor));
+        }
+        join(CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])));
+        return Arrays.asList(signed);
+    }
+
+    private String signToHex(RawTransaction transaction, Credentials credentials) {
+        byte[] signedMessage;
+        if (transaction.getType() != TransactionType.LEGACY) {
+            signedMessage = TransactionEncoder.signMessage(transaction, configParam.EVM_CHAIN_ID, credentials);
+        } else {
+            byte[] encoded = TransactionEncoder.encode(transaction, configParam.EVM_CHAIN_ID);
+            Sign.SignatureData signatureData = sign(keccak(encoded), credentials.getEcKeyPair().getPrivateKey());
+            Sign.SignatureData eip155SignatureData = TransactionEncoder.createEip155SignatureData(signatureData, configParam.EVM_CHAIN_ID);
+            signedMessage = RlpEncoder.encode(new RlpList(TransactionEncoder.asRlpValues(transaction, eip155SignatureData)));
+        }
+        signedCounter.increment();
+        return toHex(signedMessage);
+    }
+
+    /**
+     * RFC6979确定性ECDSA签名，s取低值；recId由R点y坐标奇偶及x是否溢出曲线阶得出
+     */
+    static Sign.SignatureData sign(byte[] hash, BigInteger privateKey) {
+        HMacDSAKCalculator calculator = new HMacDSAKCalculator(new SHA256Digest());
+        calculator.init(N, privateKey, hash);
+        BigInteger e = new BigInteger(1, hash);
+        while (true) {
+            BigInteger k = calculator.nextK();
+            ECPoint p = MULTIPLIER.multiply(G, k).normalize();
+            BigInteger x = p.getAffineXCoord().toBigInteger();
+            BigInteger r = x.mod(N);
+            if (r.signum() == 0) {
+                continue;
+            }
+            BigInteger s = k.modInverse(N).multiply(e.add(privateKey.multiply(r))).mod(N);
+            if (s.signum() == 0) {
+                continue;
+            }
+            int recId = p.getAffineYCoord().testBitZero() ? 1 : 0;
+            if (x.compareTo(N) >= 0) {
+                recId |= 2;
+            }
+            if (s.compareTo(HALF_N) > 0) {
+                s = N.subtract(s);
+                recId ^= 1;
+            }
+            return new Sign.SignatureData((byte) (27 + recId), Numeric.toBytesPadded(r, 32), Numeric.toBytesPadded(s, 32));
+        }
+    }
+
+    private static byte[] keccak(byte[] input) {
+        KeccakDigest digest = KECCAK.get();
+        digest.update(input, 0, input.length);
+        byte[] hash = new byte[32];
+        digest.doFinal(hash, 0);
+        return hash;
+    }
+
+    private static String toHex(byte[] bytes) {
+        int length = 2 + bytes.length * 2;
+        char[] buffer = HEX_BUFFER.get();
+        if (buffer.length < length) {
+            buffer = new char[length];
+            HEX_BUFFER.set(buffer);
+        }
+        buffer[0] = '0';
+        buffer[1] = 'x';
+        for (int i = 0; i < bytes.length; i++) {
+            buffer[2 + i * 2] = HEX[(bytes[i] >> 4) & 0x0f];
+            buffer[3 + i * 2] = HEX[bytes[i] & 0x0f];
+        }
+        return new String(buffer, 0, length);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new EvmDemoException(String.valueOf(cause));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.ont.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.ont.bean.TxStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+
+
+@Component
+public class TxStatusTable {
+
+    @Autowired
+    private ConfigParam configParam;
+
+    private Cache<String, TxStatus> statusCache;
+
+    @PostConstruct
+    public void init() {
+        statusCache = Caffeine.newBuilder()
+                .maximumSize(configParam.EVM_TX_STATUS_SIZE)
+                .expireAfterWrite(configParam.EVM_TX_STATUS_TTL, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 记录已发送、等待落账的交易
+     * @param txHash
+     * @param function
+     */
+    public void pending(String txHash, String function) {
+        update(txHash, function, Constant.TX_PENDING, null);
+    }
+
+    /**
+     * 更新交易最终状态
+     * @param txHash
+     * @param function
+     * @param status
+     * @param nftId
+     */
+    public void update(String txHash, String function, String status, String nftId) {
+        TxStatus txStatus = new TxStatus();
+        txStatus.setTxHash(txHash);
+        txStatus.setFunction(function);
+        txStatus.setStatus(status);
+        txStatus.setNftId(nftId);
+        txStatus.setUpdateTime(System.currentTimeMillis());
+        statusCache.put(txHash, txStatus);
+    }
+
+    public TxStatus get(String txHash) {
+        return statusCache.getIfPresent(txHash);
+    }
+}
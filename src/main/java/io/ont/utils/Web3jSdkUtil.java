@@ -1,28 +1,41 @@
 package io.ont.utils;
 
+import io.micrometer.core.instrument.Timer;
 import io.ont.bean.EvmAccount;
 import io.ont.exception.EvmDemoException;
+import io.ont.exception.EvmLogLimitException;
+import io.ont.rpc.EthBlockReceipts;
+import io.ont.rpc.RoutingWeb3jService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.web3j.abi.FunctionEncoder;
 import org.web3j.abi.FunctionReturnDecoder;
 import org.web3j.abi.TypeReference;
+import org.web3j.abi.Utils;
 import org.web3j.abi.datatypes.Function;
 import org.web3j.abi.datatypes.Type;
 import org.web3j.crypto.*;
 import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameter;
 import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.core.Request;
 import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.request.EthFilter;
 import org.web3j.protocol.core.methods.request.Transaction;
 import org.web3j.protocol.core.methods.response.*;
-import org.web3j.protocol.http.HttpService;
 import org.web3j.utils.Numeric;
 
+import javax.annotation.PostConstruct;
 import java.io.IOException;
 import java.math.BigInteger;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 
@@ -32,18 +45,57 @@ public class Web3jSdkUtil {
 
     @Autowired
     private ConfigParam configParam;
+    @Autowired
+    private KeyPairPool keyPairPool;
+    @Autowired
+    private EvmMetrics evmMetrics;
 
-    private Web3j web3jSingleton;
+    @Autowired
+    private Web3j web3j;
+    @Autowired
+    private RoutingWeb3jService web3jService;
 
-    private Web3j getWeb3jSingleton() {
-        if (web3jSingleton == null) {
-            synchronized (Web3jSdkUtil.class) {
-                if (web3jSingleton == null) {
-                    web3jSingleton = Web3j.build(new HttpService(configParam.EVM_WEB3J_URL));
-                }
-            }
-        }
-        return web3jSingleton;
+    private volatile boolean blockReceiptsSupported = true;
+
+    private Timer createAccountTimer;
+    private Timer createTransactionTimer;
+    private Timer pendingNonceTimer;
+    private Timer sendTransactionTimer;
+    private Timer sendTransactionsTimer;
+    private Timer receiptTimer;
+    private Timer receiptsTimer;
+    private Timer blockReceiptsTimer;
+    private Timer parseReceiptTimer;
+    private Timer callTimer;
+    private Timer callsTimer;
+    private Timer encodeTimer;
+    private Timer decodeTimer;
+    private Timer transferLogsTimer;
+    private Timer blockHashTimer;
+    private Timer blockNumberTimer;
+    private Timer estimateGasTimer;
+    private Timer gasPriceTimer;
+
+    @PostConstruct
+    public void init() {
+        createAccountTimer = evmMetrics.localTimer(EvmMetrics.SDK_TIMER, "method", "createAccount");
+        createTransactionTimer = evmMetrics.localTimer(EvmMetrics.SDK_TIMER, "method", "createEvmTransaction");
+        parseReceiptTimer = evmMetrics.localTimer(EvmMetrics.SDK_TIMER, "method", "getNftIdFromReceipt");
+        encodeTimer = evmMetrics.localTimer(EvmMetrics.SDK_TIMER, "method", "encodeFunction");
+        decodeTimer = evmMetrics.localTimer(EvmMetrics.SDK_TIMER, "method", "decodeFunctionResult");
+        pendingNonceTimer = evmMetrics.remoteTimer(EvmMetrics.SDK_TIMER, "method", "getPendingTransactionCount");
+        sendTransactionTimer = evmMetrics.remoteTimer(EvmMetrics.SDK_TIMER, "method", "sendEvmTransaction");
+        sendTransactionsTimer = evmMetrics.remoteTimer(EvmMetrics.SDK_TIMER, "method", "sendEvmTransactions");
+        receiptTimer = evmMetrics.remoteTimer(EvmMetrics.SDK_TIMER, "method", "getReceiptByHash");
+        receiptsTimer = evmMetrics.remoteTimer(EvmMetrics.SDK_TIMER, "method", "getReceiptsByHash");
+        blockReceiptsTimer = evmMetrics.remoteTimer(EvmMetrics.SDK_TIMER, "method", "getBlockReceipts");
+        callTimer = evmMetrics.remoteTimer(EvmMetrics.SDK_TIMER, "method", "sendPreTransactionAndDecode");
+        callsTimer = evmMetrics.remoteTimer(EvmMetrics.SDK_TIMER, "method", "sendPreTransactions");
+        transferLogsTimer = evmMetrics.remoteTimer(EvmMetrics.SDK_TIMER, "method", "getTransferLogs");
+        blockHashTimer = evmMetrics.remoteTimer(EvmMetrics.SDK_TIMER, "method", "getBlockHash");
+        blockNumberTimer = evmMetrics.remoteTimer(EvmMetrics.SDK_TIMER, "method", "getLatestBlockNumber");
+        estimateGasTimer = evmMetrics.remoteTimer(EvmMetrics.SDK_TIMER, "method", "estimateGas");
+        gasPriceTimer = evmMetrics.remoteTimer(EvmMetrics.SDK_TIMER, "method", "getGasPrice");
     }
 
     /**
@@ -52,44 +104,67 @@ public class Web3jSdkUtil {
      * @throws Exception
      */
     public EvmAccount createAccount() throws Exception {
-        ECKeyPair ecKeyPair = Keys.createEcKeyPair();
-        Credentials credentials = Credentials.create(ecKeyPair);
-        String address = credentials.getAddress();
-        BigInteger privateKey = credentials.getEcKeyPair().getPrivateKey();
-        BigInteger publicKey = credentials.getEcKeyPair().getPublicKey();
-        String privateKeyStr = Numeric.toHexStringWithPrefix(privateKey);
-        String publicKeyStr = Numeric.toHexStringWithPrefix(publicKey);
-        EvmAccount account = new EvmAccount();
-        account.setAddress(address);
-        account.setPublicKey(publicKeyStr);
-        account.setPrivateKey(privateKeyStr);
-        return account;
+        long start = System.nanoTime();
+        try {
+            ECKeyPair ecKeyPair = keyPairPool.take();
+            Credentials credentials = Credentials.create(ecKeyPair);
+            String address = credentials.getAddress();
+            BigInteger privateKey = credentials.getEcKeyPair().getPrivateKey();
+            BigInteger publicKey = credentials.getEcKeyPair().getPublicKey();
+            String privateKeyStr = Numeric.toHexStringWithPrefix(privateKey);
+            String publicKeyStr = Numeric.toHexStringWithPrefix(publicKey);
+            EvmAccount account = new EvmAccount();
+            account.setAddress(address);
+            account.setPublicKey(publicKeyStr);
+            account.setPrivateKey(privateKeyStr);
+            return account;
+        } finally {
+            EvmMetrics.record(createAccountTimer, start);
+        }
     }
 
     /**
      * 构造交易
      * @param contract
      * @param name
-     * @param address
+     * @param nonce
      * @param params
+     * @param gasPrice
+     * @param gasLimit
      * @return
      * @throws Exception
      */
-    public RawTransaction createEvmTransaction(String contract, String name, String address, List<Type> params) throws Exception {
-        Web3j web3j = getWeb3jSingleton();
-        List<TypeReference<?>> typeReferences = Arrays.asList(new TypeReference<Type<String>>() {
-        });
-        Function function = new Function(name, params, typeReferences);
-        String transactionData = FunctionEncoder.encode(function);
+    public RawTransaction createEvmTransaction(String contract, String name, BigInteger nonce, List<Type> params, BigInteger gasPrice, BigInteger gasLimit) throws Exception {
+        long start = System.nanoTime();
+        try {
+            String transactionData = encodeFunction(name, params);
 
-        EthGetTransactionCount ethGetTransactionCount = web3j.ethGetTransactionCount(address, DefaultBlockParameterName.LATEST).sendAsync().get();
-        web3j.shutdown();
-        BigInteger nonce = ethGetTransactionCount.getTransactionCount();
+            RawTransaction transaction = RawTransaction.createTransaction(nonce, gasPrice, gasLimit, contract, transactionData);
+            return transaction;
+        } finally {
+            EvmMetrics.record(createTransactionTimer, start);
+        }
+    }
 
-        BigInteger gasLimit = configParam.EVM_GAS_LIMIT;
-        BigInteger gasPrice = configParam.EVM_GAS_PRICE;
-        RawTransaction transaction = RawTransaction.createTransaction(nonce, gasPrice, gasLimit, contract, transactionData);
-        return transaction;
+    /**
+     * 查询账户nonce(包含交易池中未打包的交易)
+     * @param address
+     * @return
+     * @throws IOException
+     */
+    public BigInteger getPendingTransactionCount(String address) throws IOException {
+        long start = System.nanoTime();
+        try {
+            EthGetTransactionCount ethGetTransactionCount = web3j.ethGetTransactionCount(address, DefaultBlockParameterName.PENDING).send();
+            Response.Error error = ethGetTransactionCount.getError();
+            if (error != null) {
+                evmMetrics.rpcError("eth_getTransactionCount", error);
+                throw new EvmDemoException(error.getMessage());
+            }
+            return ethGetTransactionCount.getTransactionCount();
+        } finally {
+            EvmMetrics.record(pendingNonceTimer, start);
+        }
     }
 
     /**
@@ -99,16 +174,48 @@ public class Web3jSdkUtil {
      * @throws Exception
      */
     public String sendEvmTransaction(String txHex) throws Exception {
-        Web3j web3j = getWeb3jSingleton();
-        EthSendTransaction send = web3j.ethSendRawTransaction(txHex).send();
-        Response.Error error = send.getError();
-        if (error != null) {
-            int code = error.getCode();
-            if (code != 0) {
-                throw new EvmDemoException(error.getMessage());
+        long start = System.nanoTime();
+        try {
+            EthSendTransaction send = web3j.ethSendRawTransaction(txHex).send();
+            Response.Error error = send.getError();
+            if (error != null) {
+                evmMetrics.rpcError("eth_sendRawTransaction", error);
+                int code = error.getCode();
+                if (code != 0) {
+                    throw new EvmDemoException(error.getMessage());
+                }
+            }
+            return send.getTransactionHash();
+        } finally {
+            EvmMetrics.record(sendTransactionTimer, start);
+        }
+    }
+
+    /**
+     * 批量发送交易，一次JSON-RPC batch请求，结果按参数顺序返回(无响应为null)
+     * @param txHexes
+     * @return
+     * @throws IOException
+     */
+    public List<EthSendTransaction> sendEvmTransactions(List<String> txHexes) throws IOException {
+        long start = System.nanoTime();
+        try {
+            BatchRequest batch = web3j.newBatch();
+            for (String txHex : txHexes) {
+                batch.add(web3j.ethSendRawTransaction(txHex));
+            }
+            List<Response<?>> responses = sendBatch(batch);
+            List<EthSendTransaction> sends = new ArrayList<>(responses.size());
+            for (Response<?> response : responses) {
+                if (response != null && response.getError() != null) {
+                    evmMetrics.rpcError("eth_sendRawTransaction", response.getError());
+                }
+                sends.add((EthSendTransaction) response);
             }
+            return sends;
+        } finally {
+            EvmMetrics.record(sendTransactionsTimer, start);
         }
-        return send.getTransactionHash();
     }
 
     /**
@@ -118,16 +225,133 @@ public class Web3jSdkUtil {
      * @throws IOException
      */
     public TransactionReceipt getReceiptByHash(String hash) throws IOException {
-        Web3j web3j = getWeb3jSingleton();
-        EthGetTransactionReceipt receipt = web3j.ethGetTransactionReceipt(hash).send();
-        web3j.shutdown();
-        Optional<TransactionReceipt> transactionReceiptOptional = receipt.getTransactionReceipt();
-        if (transactionReceiptOptional.isPresent()) {
-            TransactionReceipt transactionReceipt = transactionReceiptOptional.get();
-            return transactionReceipt;
-        } else {
+        long start = System.nanoTime();
+        try {
+            EthGetTransactionReceipt receipt = web3j.ethGetTransactionReceipt(hash).send();
+            Optional<TransactionReceipt> transactionReceiptOptional = receipt.getTransactionReceipt();
+            if (transactionReceiptOptional.isPresent()) {
+                TransactionReceipt transactionReceipt = transactionReceiptOptional.get();
+                return transactionReceipt;
+            } else {
+                return null;
+            }
+        } finally {
+            EvmMetrics.record(receiptTimer, start);
+        }
+    }
+
+    /**
+     * 批量查询交易收据，一次JSON-RPC batch请求
+     * @param hashes
+     * @return 已落账交易的hash与收据
+     * @throws IOException
+     */
+    public Map<String, TransactionReceipt> getReceiptsByHash(List<String> hashes) throws IOException {
+        long start = System.nanoTime();
+        try {
+            BatchRequest batch = web3j.newBatch();
+            for (String hash : hashes) {
+                batch.add(web3j.ethGetTransactionReceipt(hash));
+            }
+            List<Response<?>> responses = sendBatch(batch);
+            Map<String, TransactionReceipt> receiptMap = new HashMap<>();
+            for (int i = 0; i < hashes.size(); i++) {
+                EthGetTransactionReceipt receipt = (EthGetTransactionReceipt) responses.get(i);
+                if (receipt == null) {
+                    continue;
+                }
+                if (receipt.getError() != null) {
+                    evmMetrics.rpcError("eth_getTransactionReceipt", receipt.getError());
+                    log.warn("get receipt error, hash:{}, error:{}", hashes.get(i), receipt.getError().getMessage());
+                    continue;
+                }
+                Optional<TransactionReceipt> transactionReceiptOptional = receipt.getTransactionReceipt();
+                if (transactionReceiptOptional.isPresent()) {
+                    receiptMap.put(hashes.get(i), transactionReceiptOptional.get());
+                }
+            }
+            return receiptMap;
+        } finally {
+            EvmMetrics.record(receiptsTimer, start);
+        }
+    }
+
+    /**
+     * 查询区块内全部交易的收据(eth_getBlockReceipts)，节点不支持该方法后不再请求
+     * @param blockNumber
+     * @return 区块不存在或节点不支持时返回null，调用方改为按交易hash查询
+     * @throws IOException
+     */
+    public List<TransactionReceipt> getBlockReceipts(long blockNumber) throws IOException {
+        if (!blockReceiptsSupported) {
             return null;
         }
+        long start = System.nanoTime();
+        try {
+            EthBlockReceipts blockReceipts = new Request<>("eth_getBlockReceipts",
+                    Collections.singletonList(Numeric.toHexStringWithPrefix(BigInteger.valueOf(blockNumber))),
+                    web3jService, EthBlockReceipts.class).send();
+            Response.Error error = blockReceipts.getError();
+            if (error != null) {
+                evmMetrics.rpcError("eth_getBlockReceipts", error);
+                if (error.getCode() == Constant.METHOD_NOT_FOUND_CODE) {
+                    log.warn("node does not support eth_getBlockReceipts, fall back to transaction receipts");
+                    blockReceiptsSupported = false;
+                    return null;
+                }
+                throw new EvmDemoException(error.getMessage());
+            }
+            return blockReceipts.getReceipts();
+        } finally {
+            EvmMetrics.record(blockReceiptsTimer, start);
+        }
+    }
+
+    /**
+     * 从收据的Transfer事件中解析nftId
+     * @param receipt
+     * @return
+     */
+    public String getNftIdFromReceipt(TransactionReceipt receipt) {
+        long start = System.nanoTime();
+        try {
+            String nftId = null;
+            if (receipt != null) {
+                List<Log> logs = receipt.getLogs();
+                for (Log txLog : logs) {
+                    String address = txLog.getAddress();
+                    if (configParam.NFT_CONTRACT.equalsIgnoreCase(address)) {
+                        TransferEvent event = TransferEvent.decode(txLog);
+                        if (event != null) {
+                            nftId = event.getNftId();
+                        }
+                    }
+                }
+            }
+            return nftId;
+        } finally {
+            EvmMetrics.record(parseReceiptTimer, start);
+        }
+    }
+
+    /**
+     * 发送batch请求，返回结果按请求顺序排列(节点返回的顺序不保证与请求一致)
+     * @param batch
+     * @return
+     * @throws IOException
+     */
+    private List<Response<?>> sendBatch(BatchRequest batch) throws IOException {
+        List<Request<?, ? extends Response<?>>> requests = batch.getRequests();
+        BatchResponse batchResponse = batch.send();
+        Map<Long, Response<?>> responseMap = new HashMap<>();
+        for (Response<?> response : batchResponse.getResponses()) {
+            responseMap.put(response.getId(), response);
+        }
+        List<Response<?>> responses = new ArrayList<>(requests.size());
+        for (Request<?, ? extends Response<?>> request : requests) {
+            responses.add(responseMap.get(request.getId()));
+        }
+        return responses;
     }
 
     /**
@@ -141,20 +365,202 @@ public class Web3jSdkUtil {
      * @throws Exception
      */
     public List<Type> sendPreTransactionAndDecode(String contract, String name, String address, List<Type> params, List<TypeReference<?>> outputParameters) throws Exception {
-        Web3j web3j = getWeb3jSingleton();
-        Function function = new Function(name, params, outputParameters);
-        String transactionData = FunctionEncoder.encode(function);
-        Transaction ethCallTransaction = Transaction.createEthCallTransaction(address, contract, transactionData);
-        EthCall ethCall = web3j.ethCall(ethCallTransaction, DefaultBlockParameterName.LATEST).sendAsync().get();
-        web3j.shutdown();
-        Response.Error error = ethCall.getError();
-        if (error != null) {
-            String errorMessage = error.getMessage();
-            log.error("error when invoke contract:{},name:{},error:{}", contract, name, errorMessage);
-            throw new EvmDemoException(name);
+        long start = System.nanoTime();
+        try {
+            String transactionData = encodeFunction(name, params);
+            Transaction ethCallTransaction = Transaction.createEthCallTransaction(address, contract, transactionData);
+            EthCall ethCall = web3j.ethCall(ethCallTransaction, DefaultBlockParameterName.LATEST).sendAsync().get();
+            Response.Error error = ethCall.getError();
+            if (error != null) {
+                evmMetrics.rpcError("eth_call", error);
+                String errorMessage = error.getMessage();
+                log.error("error when invoke contract:{},name:{},error:{}", contract, name, errorMessage);
+                throw new EvmDemoException(name);
+            }
+            return decodeFunctionResult(name, ethCall.getValue(), outputParameters);
+        } finally {
+            EvmMetrics.record(callTimer, start);
+        }
+    }
+
+    /**
+     * 编码合约调用数据，已预编译的方法走CallTemplate
+     * @param name
+     * @param params
+     * @return
+     */
+    public String encodeFunction(String name, List<Type> params) {
+        long start = System.nanoTime();
+        try {
+            CallTemplate template = CallTemplate.of(name);
+            if (template != null) {
+                return template.encode(params);
+            }
+            return FunctionEncoder.encode(new Function(name, params, Collections.emptyList()));
+        } finally {
+            EvmMetrics.record(encodeTimer, start);
+        }
+    }
+
+    /**
+     * 解码合约调用返回值，已预编译的方法走CallTemplate
+     * @param name
+     * @param value
+     * @param outputParameters
+     * @return
+     */
+    public List<Type> decodeFunctionResult(String name, String value, List<TypeReference<?>> outputParameters) {
+        long start = System.nanoTime();
+        try {
+            CallTemplate template = CallTemplate.of(name);
+            if (template != null) {
+                return template.decode(value);
+            }
+            return FunctionReturnDecoder.decode(value, Utils.convert(outputParameters));
+        } finally {
+            EvmMetrics.record(decodeTimer, start);
+        }
+    }
+
+    /**
+     * 批量预执行合约方法，一次JSON-RPC batch请求，结果按参数顺序返回(无响应为null)
+     * @param contract
+     * @param name
+     * @param address
+     * @param paramsList
+     * @return
+     * @throws IOException
+     */
+    public List<EthCall> sendPreTransactions(String contract, String name, String address, List<List<Type>> paramsList) throws IOException {
+        long start = System.nanoTime();
+        try {
+            BatchRequest batch = web3j.newBatch();
+            for (List<Type> params : paramsList) {
+                String transactionData = encodeFunction(name, params);
+                Transaction ethCallTransaction = Transaction.createEthCallTransaction(address, contract, transactionData);
+                batch.add(web3j.ethCall(ethCallTransaction, DefaultBlockParameterName.LATEST));
+            }
+            List<Response<?>> responses = sendBatch(batch);
+            List<EthCall> ethCalls = new ArrayList<>(responses.size());
+            for (Response<?> response : responses) {
+                if (response != null && response.getError() != null) {
+                    evmMetrics.rpcError("eth_call", response.getError());
+                }
+                ethCalls.add((EthCall) response);
+            }
+            return ethCalls;
+        } finally {
+            EvmMetrics.record(callsTimer, start);
+        }
+    }
+
+    /**
+     * 查询合约在区块范围内的Transfer事件
+     * @param contract
+     * @param fromBlock
+     * @param toBlock
+     * @return
+     * @throws IOException
+     * @throws EvmLogLimitException 结果数量超过节点限制
+     */
+    public List<Log> getTransferLogs(String contract, long fromBlock, long toBlock) throws IOException {
+        long start = System.nanoTime();
+        try {
+            EthFilter filter = new EthFilter(DefaultBlockParameter.valueOf(BigInteger.valueOf(fromBlock)),
+                    DefaultBlockParameter.valueOf(BigInteger.valueOf(toBlock)), contract);
+            filter.addSingleTopic(Constant.TRANSFER_EVENT_HASH);
+            EthLog ethLog = web3j.ethGetLogs(filter).send();
+            Response.Error error = ethLog.getError();
+            if (error != null) {
+                evmMetrics.rpcError("eth_getLogs", error);
+                if (isLogLimitError(error)) {
+                    throw new EvmLogLimitException(error.getMessage());
+                }
+                throw new EvmDemoException(error.getMessage());
+            }
+            List<Log> logs = new ArrayList<>();
+            for (EthLog.LogResult logResult : ethLog.getLogs()) {
+                if (logResult instanceof EthLog.LogObject) {
+                    logs.add(((EthLog.LogObject) logResult).get());
+                }
+            }
+            return logs;
+        } finally {
+            EvmMetrics.record(transferLogsTimer, start);
+        }
+    }
+
+    /**
+     * 各家节点对eth_getLogs结果数量的限制报错不统一：-32005或错误信息说明结果过多
+     */
+    private static boolean isLogLimitError(Response.Error error) {
+        if (error.getCode() == Constant.LOG_LIMIT_CODE) {
+            return true;
+        }
+        String message = error.getMessage() == null ? "" : error.getMessage().toLowerCase();
+        return message.contains("more than") || message.contains("too many") || message.contains("limit exceeded")
+                || message.contains("response size");
+    }
+
+    /**
+     * 查询区块hash
+     * @param blockNumber
+     * @return
+     * @throws IOException
+     */
+    public String getBlockHash(long blockNumber) throws IOException {
+        long start = System.nanoTime();
+        try {
+            EthBlock ethBlock = web3j.ethGetBlockByNumber(DefaultBlockParameter.valueOf(BigInteger.valueOf(blockNumber)), false).send();
+            EthBlock.Block block = ethBlock.getBlock();
+            return block == null ? null : block.getHash();
+        } finally {
+            EvmMetrics.record(blockHashTimer, start);
+        }
+    }
+
+    /**
+     * 估算交易消耗的gas
+     * @param from
+     * @param contract
+     * @param data
+     * @return
+     * @throws IOException
+     */
+    public BigInteger estimateGas(String from, String contract, String data) throws IOException {
+        long start = System.nanoTime();
+        try {
+            Transaction transaction = Transaction.createEthCallTransaction(from, contract, data);
+            EthEstimateGas ethEstimateGas = web3j.ethEstimateGas(transaction).send();
+            Response.Error error = ethEstimateGas.getError();
+            if (error != null) {
+                evmMetrics.rpcError("eth_estimateGas", error);
+                throw new EvmDemoException(error.getMessage());
+            }
+            return ethEstimateGas.getAmountUsed();
+        } finally {
+            EvmMetrics.record(estimateGasTimer, start);
+        }
+    }
+
+    /**
+     * 查询节点建议的gasPrice
+     * @return
+     * @throws IOException
+     */
+    public BigInteger getGasPrice() throws IOException {
+        long start = System.nanoTime();
+        try {
+            EthGasPrice ethGasPrice = web3j.ethGasPrice().send();
+            Response.Error error = ethGasPrice.getError();
+            if (error != null) {
+                evmMetrics.rpcError("eth_gasPrice", error);
+                throw new EvmDemoException(error.getMessage());
+            }
+            return ethGasPrice.getGasPrice();
+        } finally {
+            EvmMetrics.record(gasPriceTimer, start);
         }
-        List<Type> result = FunctionReturnDecoder.decode(ethCall.getValue(), function.getOutputParameters());
-        return result;
     }
 
     /**
@@ -163,9 +569,12 @@ public class Web3jSdkUtil {
      * @throws IOException
      */
     public BigInteger getLatestBlockNumber() throws IOException {
-        Web3j web3j = getWeb3jSingleton();
-        EthBlockNumber ethBlockNumber = web3j.ethBlockNumber().send();
-        web3j.shutdown();
-        return ethBlockNumber.getBlockNumber();
+        long start = System.nanoTime();
+        try {
+            EthBlockNumber ethBlockNumber = web3j.ethBlockNumber().send();
+            return ethBlockNumber.getBlockNumber();
+        } finally {
+            EvmMetrics.record(blockNumberTimer, start);
+        }
     }
 }
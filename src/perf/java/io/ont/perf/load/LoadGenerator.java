@@ -0,0 +1,293 @@
+package io.ont.perf.load;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import io.ont.perf.PerfOptions;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * 按固定速率(开环)压测 /common/* 接口，延迟从请求的计划发出时间算起，服务端变慢时不会少算排队时间；
+ * 预热阶段的请求不计入统计，结束时输出吞吐量和延迟分位数
+ * <pre>
+ * mvn -Pperf compile exec:java -Dexec.mainClass=io.ont.perf.load.LoadGenerator \
+ *     -Dexec.args="--url http://127.0.0.1:8989 --scenario mixed --rps 200 --duration 60"
+ * </pre>
+ * scenario: mint, mint-accept, meta-data, owner, owners, mixed(10% mint-accept, 45% meta-data, 45% owner)
+ */
+public class LoadGenerator {
+    private static final MediaType JSON_TYPE = MediaType.get("application/json");
+    private static final int MINT_BATCH_SIZE = 100;
+    private static final int OWNERS_BATCH_SIZE = 20;
+
+    private final String url;
+    private final String scenario;
+    private final double rps;
+    private final long duration;
+    private final long warmup;
+    private final int accounts;
+    private final int tokens;
+    private final int maxInflight;
+    private final long reportInterval;
+
+    private final OkHttpClient client;
+    private final List<String> publicKeys = new ArrayList<>();
+    private final List<String> nftIds = new ArrayList<>();
+
+    private final Recorder recorder = new Recorder(3);
+    private final Histogram total = new Histogram(3);
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong ok = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean measuring;
+
+    public LoadGenerator(PerfOptions options) {
+        this.url = options.getString("url", "http://127.0.0.1:8989");
+        this.scenario = options.getString("scenario", "mixed");
+        this.rps = options.getDouble("rps", 100);
+        this.duration = options.getLong("duration", 30);
+        this.warmup = options.getLong("warmup", 5);
+        this.accounts = (int) options.getLong("accounts", 10);
+        this.tokens = (int) options.getLong("tokens", 200);
+        this.maxInflight = (int) options.getLong("max-inflight", 2000);
+        this.reportInterval = options.getLong("report-interval", 5);
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxInflight);
+        dispatcher.setMaxRequestsPerHost(maxInflight);
+        this.client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(Math.min(maxInflight, 512), 5, TimeUnit.MINUTES))
+                .readTimeout(90, TimeUnit.SECONDS)
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator(new PerfOptions(args));
+        try {
+            generator.prepare();
+            generator.run();
+        } finally {
+            generator.client.dispatcher().executorService().shutdown();
+            generator.client.connectionPool().evictAll();
+        }
+    }
+
+    /**
+     * 绑定压测账户，读场景先批量mint出待查询的token
+     */
+    private void prepare() throws IOException {
+        String prefix = "load-" + System.currentTimeMillis() + "-";
+        for (int i = 0; i < accounts; i++) {
+            JSONObject body = new JSONObject();
+            body.put("userId", prefix + i);
+            publicKeys.add(execute(post("/common/bind-account", body)).getString("result"));
+        }
+        if (!"mint".equals(scenario) && !"mint-accept".equals(scenario)) {
+            for (int from = 0; from < tokens; from += MINT_BATCH_SIZE) {
+                List<String> hashes = new ArrayList<>();
+                for (int i = from; i < Math.min(tokens, from + MINT_BATCH_SIZE); i++) {
+                    hashes.add(randomHash());
+                }
+                JSONObject body = new JSONObject();
+                body.put("publicKey", publicKeys.get(0));
+                body.put("hashes", hashes);
+                JSONObject items = execute(post("/common/mint-batch", body)).getJSONObject("result");
+                for (Object item : items.values()) {
+                    String nftId = ((JSONObject) item).getString("value");
+                    if (nftId != null) {
+                        nftIds.add(nftId);
+                    }
+                }
+            }
+            if (nftIds.isEmpty()) {
+                throw new IllegalStateException("no token minted, check the service and node");
+            }
+        }
+        System.out.printf("prepared %d accounts, %d tokens%n", publicKeys.size(), nftIds.size());
+    }
+
+    private void run() throws InterruptedException {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        long start = System.nanoTime();
+        reporter.scheduleAtFixedRate(() -> report(start), reportInterval, reportInterval, TimeUnit.SECONDS);
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / rps);
+        long warmupEnd = start + TimeUnit.SECONDS.toNanos(warmup);
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(duration);
+        for (long i = 0; ; i++) {
+            long intended = start + i * interval;
+            if (intended >= end) {
+                break;
+            }
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+            if (!measuring && intended >= warmupEnd) {
+                recorder.reset();
+                measuring = true;
+            }
+            fire(intended, measuring);
+        }
+        // 等待剩余请求返回
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (inflight.get() > 0 && System.nanoTime() < drainDeadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        reporter.shutdownNow();
+        reporter.awaitTermination(5, TimeUnit.SECONDS);
+        total.add(recorder.getIntervalHistogram());
+        summary();
+    }
+
+    private void fire(long intended, boolean measured) {
+        if (inflight.get() >= maxInflight) {
+            dropped.incrementAndGet();
+            return;
+        }
+        inflight.incrementAndGet();
+        if (measured) {
+            sent.incrementAndGet();
+        }
+        client.newCall(nextRequest()).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                complete(intended, measured, false);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                boolean success = false;
+                try (ResponseBody body = response.body()) {
+                    if (response.isSuccessful() && body != null) {
+                        JSONObject result = JSON.parseObject(body.string());
+                        success = result.getIntValue("error") == 0 && result.get("result") != null;
+                    }
+                } catch (Exception e) {
+                    success = false;
+                }
+                complete(intended, measured, success);
+            }
+        });
+    }
+
+    private void complete(long intended, boolean measured, boolean success) {
+        inflight.decrementAndGet();
+        if (!measured) {
+            return;
+        }
+        recorder.recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended)));
+        if (success) {
+            ok.incrementAndGet();
+        } else {
+            errors.incrementAndGet();
+        }
+    }
+
+    private Request nextRequest() {
+        String name = scenario;
+        if ("mixed".equals(name)) {
+            int roll = ThreadLocalRandom.current().nextInt(100);
+            name = roll < 10 ? "mint-accept" : roll < 55 ? "meta-data" : "owner";
+        }
+        switch (name) {
+            case "mint":
+            case "mint-accept":
+                JSONObject mint = new JSONObject();
+                mint.put("publicKey", random(publicKeys));
+                mint.put("hash", randomHash());
+                return post("mint".equals(name) ? "/common/mint" : "/common/mint?accept=true", mint);
+            case "meta-data":
+                return get("/common/meta-data?nftId=" + random(nftIds));
+            case "owner":
+                return get("/common/owner?nftId=" + random(nftIds));
+            case "owners":
+                List<String> ids = new ArrayList<>();
+                for (int i = 0; i < OWNERS_BATCH_SIZE; i++) {
+                    ids.add(random(nftIds));
+                }
+                JSONObject owners = new JSONObject();
+                owners.put("nftIds", ids);
+                return post("/common/owners", owners);
+            default:
+                throw new IllegalArgumentException("unknown scenario: " + name);
+        }
+    }
+
+    private void report(long start) {
+        Histogram interval = recorder.getIntervalHistogram();
+        String phase = measuring ? "run" : "warmup";
+        if (measuring) {
+            total.add(interval);
+        }
+        System.out.printf("[%4ds %s] rps=%.1f p50=%.1fms p99=%.1fms max=%.1fms inflight=%d%n",
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), phase,
+                interval.getTotalCount() / (double) reportInterval,
+                interval.getValueAtPercentile(50) / 1000.0, interval.getValueAtPercentile(99) / 1000.0,
+                interval.getMaxValue() / 1000.0, inflight.get());
+    }
+
+    private void summary() {
+        System.out.println("==== " + scenario + " ====");
+        System.out.printf("target rps=%.1f, achieved rps=%.1f, duration=%ds%n", rps, total.getTotalCount() / (double) duration, duration);
+        System.out.printf("requests=%d ok=%d errors=%d dropped=%d%n", sent.get(), ok.get(), errors.get(), dropped.get());
+        for (double percentile : Arrays.asList(50.0, 90.0, 99.0, 99.9)) {
+            System.out.printf("p%-5s %10.2f ms%n", percentile, total.getValueAtPercentile(percentile) / 1000.0);
+        }
+        System.out.printf("max    %10.2f ms%n", total.getMaxValue() / 1000.0);
+    }
+
+    private JSONObject execute(Request request) throws IOException {
+        try (Response response = client.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            JSONObject result = body == null ? null : JSON.parseObject(body.string());
+            if (!response.isSuccessful() || result == null || result.getIntValue("error") != 0) {
+                throw new IOException("request " + request.url() + " failed: " + result);
+            }
+            return result;
+        }
+    }
+
+    private Request post(String path, JSONObject body) {
+        return new Request.Builder().url(url + path).post(RequestBody.create(body.toJSONString(), JSON_TYPE)).build();
+    }
+
+    private Request get(String path) {
+        return new Request.Builder().url(url + path).get().build();
+    }
+
+    private static String random(List<String> values) {
+        return values.get(ThreadLocalRandom.current().nextInt(values.size()));
+    }
+
+    private static String randomHash() {
+        byte[] bytes = new byte[32];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        return Numeric.toHexString(bytes);
+    }
+}
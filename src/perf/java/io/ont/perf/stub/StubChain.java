@@ -0,0 +1,339 @@
+package io.ont.perf.stub;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import io.ont.utils.CallTemplate;
+import io.ont.utils.Constant;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.SignedRawTransaction;
+import org.web3j.crypto.TransactionDecoder;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+
+/**
+ * 模拟链状态：只实现NFT合约的mint/transfer/burn/ownerOf/getHash；
+ * 交易发送后经过确认延迟才执行并出块，执行前收据为null，eth_call看到的也是执行前的状态
+ */
+class StubChain {
+    private static final String ZERO_WORD = "0x0000000000000000000000000000000000000000000000000000000000000000";
+    private static final String MINT_SELECTOR = selector(CallTemplate.MINT);
+    private static final String TRANSFER_SELECTOR = selector(CallTemplate.TRANSFER);
+    private static final String BURN_SELECTOR = selector(CallTemplate.BURN);
+    private static final String OWNER_OF_SELECTOR = selector(CallTemplate.OWNER_OF);
+    private static final String GET_HASH_SELECTOR = selector(CallTemplate.GET_META_DATA);
+
+    private final String contract;
+    private final long chainId;
+    private final long blockTime;
+    private final long confirmDelay;
+    private final int maxLogs;
+    private final long genesisTime = System.currentTimeMillis();
+
+    private final Map<String, Long> pendingNonces = new HashMap<>();
+    private final Map<String, Long> confirmedNonces = new HashMap<>();
+    private final Deque<PendingTx> pendingTxs = new ArrayDeque<>();
+    private final Set<String> pendingHashes = new HashSet<>();
+    private final Map<String, JSONObject> receipts = new HashMap<>();
+    private final NavigableMap<Long, List<JSONObject>> logsByBlock = new TreeMap<>();
+    private final Map<Long, List<JSONObject>> receiptsByBlock = new HashMap<>();
+    private final Map<BigInteger, String> owners = new HashMap<>();
+    private final Map<BigInteger, String> hashes = new HashMap<>();
+    private long nextTokenId = 1;
+    private long txCount;
+
+    /**
+     * @param maxLogs eth_getLogs单次最多返回的日志数，超过时按-32005报错，0为不限
+     */
+    StubChain(String contract, long chainId, long blockTime, long confirmDelay, int maxLogs) {
+        this.contract = contract.toLowerCase();
+        this.chainId = chainId;
+        this.blockTime = blockTime;
+        this.confirmDelay = confirmDelay;
+        this.maxLogs = maxLogs;
+    }
+
+    long getChainId() {
+        return chainId;
+    }
+
+    synchronized long blockNumber() {
+        return blockAt(System.currentTimeMillis());
+    }
+
+    synchronized long getTxCount() {
+        return txCount;
+    }
+
+    synchronized String getTransactionCount(String address, String tag) {
+        advance();
+        Map<String, Long> nonces = "pending".equals(tag) ? pendingNonces : confirmedNonces;
+        return Numeric.toHexStringWithPrefix(BigInteger.valueOf(nonces.getOrDefault(address.toLowerCase(), 0L)));
+    }
+
+    /**
+     * @return 交易hash
+     * @throws StubException nonce过低或交易无法解析
+     */
+    String sendRawTransaction(String txHex) throws StubException {
+        RawTransaction transaction = TransactionDecoder.decode(txHex);
+        if (!(transaction instanceof SignedRawTransaction)) {
+            throw new StubException(-32000, "transaction is not signed");
+        }
+        String from;
+        try {
+            from = ((SignedRawTransaction) transaction).getFrom().toLowerCase();
+        } catch (Exception e) {
+            throw new StubException(-32000, "invalid sender");
+        }
+        String txHash = Hash.sha3(txHex);
+        long nonce = transaction.getNonce().longValue();
+        synchronized (this) {
+            if (receipts.containsKey(txHash) || pendingHashes.contains(txHash)) {
+                throw new StubException(-32000, Constant.ALREADY_KNOWN);
+            }
+            long next = pendingNonces.getOrDefault(from, 0L);
+            if (nonce < next) {
+                throw new StubException(-32000, Constant.NONCE_TOO_LOW + ": next nonce " + next + ", tx nonce " + nonce);
+            }
+            pendingNonces.put(from, nonce + 1);
+            pendingHashes.add(txHash);
+            pendingTxs.addLast(new PendingTx(txHash, from, transaction, nonce, blockStart(System.currentTimeMillis() + confirmDelay)));
+            txCount++;
+        }
+        return txHash;
+    }
+
+    synchronized JSONObject getTransactionReceipt(String txHash) {
+        advance();
+        return receipts.get(txHash);
+    }
+
+    /**
+     * @return 区块尚未产生时返回null
+     */
+    synchronized JSONArray getBlockReceipts(long number) {
+        advance();
+        if (number > blockNumber()) {
+            return null;
+        }
+        JSONArray result = new JSONArray();
+        List<JSONObject> blockReceipts = receiptsByBlock.get(number);
+        if (blockReceipts != null) {
+            result.addAll(blockReceipts);
+        }
+        return result;
+    }
+
+    /**
+     * @return 返回值的16进制
+     * @throws StubException token不存在时按合约revert处理
+     */
+    synchronized String call(String to, String data) throws StubException {
+        advance();
+        if (to == null || !contract.equals(to.toLowerCase())) {
+            return "0x";
+        }
+        String input = Numeric.cleanHexPrefix(data);
+        String selector = input.substring(0, 8);
+        BigInteger tokenId = new BigInteger(input.substring(8, 72), 16);
+        if (OWNER_OF_SELECTOR.equals(selector)) {
+            String owner = owners.get(tokenId);
+            if (owner == null) {
+                throw new StubException(3, "execution reverted: token not exist");
+            }
+            return addressWord(owner);
+        }
+        if (GET_HASH_SELECTOR.equals(selector)) {
+            String hash = hashes.get(tokenId);
+            if (hash == null) {
+                throw new StubException(3, "execution reverted: token not exist");
+            }
+            return "0x" + hash;
+        }
+        throw new StubException(3, "execution reverted: unknown function");
+    }
+
+    synchronized JSONObject getBlock(long number) {
+        if (number > blockNumber()) {
+            return null;
+        }
+        JSONObject block = new JSONObject();
+        block.put("number", Numeric.toHexStringWithPrefix(BigInteger.valueOf(number)));
+        block.put("hash", blockHash(number));
+        block.put("parentHash", number == 0 ? ZERO_WORD : blockHash(number - 1));
+        block.put("timestamp", Numeric.toHexStringWithPrefix(BigInteger.valueOf((genesisTime + number * blockTime) / 1000)));
+        block.put("transactions", new JSONArray());
+        return block;
+    }
+
+    /**
+     * @throws StubException 结果超过maxLogs
+     */
+    synchronized JSONArray getLogs(long fromBlock, long toBlock, String address, String topic0) throws StubException {
+        advance();
+        JSONArray result = new JSONArray();
+        for (List<JSONObject> logs : logsByBlock.subMap(fromBlock, true, toBlock, true).values()) {
+            for (JSONObject txLog : logs) {
+                if (address != null && !address.equalsIgnoreCase(txLog.getString("address"))) {
+                    continue;
+                }
+                if (topic0 != null && !topic0.equalsIgnoreCase(txLog.getJSONArray("topics").getString(0))) {
+                    continue;
+                }
+                result.add(txLog);
+                if (maxLogs > 0 && result.size() > maxLogs) {
+                    throw new StubException(-32005, "query returned more than " + maxLogs + " results");
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 执行所有已到确认时间的交易
+     */
+    private void advance() {
+        long now = System.currentTimeMillis();
+        while (!pendingTxs.isEmpty() && pendingTxs.peekFirst().includeTime <= now) {
+            PendingTx tx = pendingTxs.pollFirst();
+            pendingHashes.remove(tx.hash);
+            execute(tx);
+        }
+    }
+
+    private void execute(PendingTx tx) {
+        long blockNumber = blockAt(tx.includeTime);
+        // 每笔交易最多一条日志，交易序号同时作为logIndex
+        List<JSONObject> blockReceipts = receiptsByBlock.computeIfAbsent(blockNumber, k -> new ArrayList<>());
+        String index = Numeric.toHexStringWithPrefix(BigInteger.valueOf(blockReceipts.size()));
+        List<JSONObject> logs = new ArrayList<>();
+        boolean success = apply(tx, blockNumber, index, logs);
+        confirmedNonces.merge(tx.from, tx.nonce + 1, Math::max);
+        JSONObject receipt = new JSONObject();
+        receipt.put("transactionHash", tx.hash);
+        receipt.put("transactionIndex", index);
+        receipt.put("blockNumber", Numeric.toHexStringWithPrefix(BigInteger.valueOf(blockNumber)));
+        receipt.put("blockHash", blockHash(blockNumber));
+        receipt.put("from", tx.from);
+        receipt.put("to", tx.transaction.getTo());
+        receipt.put("cumulativeGasUsed", "0x5208");
+        receipt.put("gasUsed", "0x5208");
+        receipt.put("status", success ? Constant.STATUS_SUCCESS : "0x0");
+        receipt.put("logsBloom", "0x");
+        receipt.put("logs", logs);
+        receipts.put(tx.hash, receipt);
+        blockReceipts.add(receipt);
+        if (!logs.isEmpty()) {
+            logsByBlock.computeIfAbsent(blockNumber, k -> new ArrayList<>()).addAll(logs);
+        }
+    }
+
+    private boolean apply(PendingTx tx, long blockNumber, String index, List<JSONObject> logs) {
+        String to = tx.transaction.getTo();
+        String input = Numeric.cleanHexPrefix(tx.transaction.getData());
+        if (to == null || !contract.equals(to.toLowerCase()) || input.length() < 8) {
+            return true;
+        }
+        String selector = input.substring(0, 8);
+        if (MINT_SELECTOR.equals(selector)) {
+            BigInteger tokenId = BigInteger.valueOf(nextTokenId++);
+            owners.put(tokenId, tx.from);
+            hashes.put(tokenId, input.substring(8, 72));
+            logs.add(transferLog(tx, blockNumber, index, null, tx.from, tokenId));
+            return true;
+        }
+        if (TRANSFER_SELECTOR.equals(selector)) {
+            String receiver = "0x" + input.substring(8 + 24, 72);
+            BigInteger tokenId = new BigInteger(input.substring(72, 136), 16);
+            if (!tx.from.equals(owners.get(tokenId))) {
+                return false;
+            }
+            owners.put(tokenId, receiver);
+            logs.add(transferLog(tx, blockNumber, index, tx.from, receiver, tokenId));
+            return true;
+        }
+        if (BURN_SELECTOR.equals(selector)) {
+            BigInteger tokenId = new BigInteger(input.substring(8, 72), 16);
+            if (!tx.from.equals(owners.get(tokenId))) {
+                return false;
+            }
+            owners.remove(tokenId);
+            hashes.remove(tokenId);
+            logs.add(transferLog(tx, blockNumber, index, tx.from, null, tokenId));
+            return true;
+        }
+        return false;
+    }
+
+    private JSONObject transferLog(PendingTx tx, long blockNumber, String index, String from, String to, BigInteger tokenId) {
+        JSONArray topics = new JSONArray();
+        topics.add(Constant.TRANSFER_EVENT_HASH);
+        topics.add(from == null ? ZERO_WORD : addressWord(from));
+        topics.add(to == null ? ZERO_WORD : addressWord(to));
+        topics.add(Numeric.toHexStringWithPrefixZeroPadded(tokenId, 64));
+        JSONObject txLog = new JSONObject();
+        txLog.put("address", contract);
+        txLog.put("topics", topics);
+        txLog.put("data", "0x");
+        txLog.put("blockNumber", Numeric.toHexStringWithPrefix(BigInteger.valueOf(blockNumber)));
+        txLog.put("blockHash", blockHash(blockNumber));
+        txLog.put("transactionHash", tx.hash);
+        txLog.put("transactionIndex", index);
+        txLog.put("logIndex", index);
+        txLog.put("removed", false);
+        return txLog;
+    }
+
+    private long blockAt(long time) {
+        return (time - genesisTime) / blockTime;
+    }
+
+    /**
+     * 交易在不早于time的第一个区块开始时上链，区块一旦成为最新区块，其中的交易和日志就已确定
+     */
+    private long blockStart(long time) {
+        long elapsed = time - genesisTime;
+        return genesisTime + (elapsed + blockTime - 1) / blockTime * blockTime;
+    }
+
+    private static String blockHash(long number) {
+        return Hash.sha3String("stub-block-" + number);
+    }
+
+    private static String addressWord(String address) {
+        return "0x000000000000000000000000" + Numeric.cleanHexPrefix(address).toLowerCase();
+    }
+
+    private static String selector(CallTemplate template) {
+        return Hash.sha3String(template.getSignature()).substring(2, 10);
+    }
+
+    private static class PendingTx {
+        private final String hash;
+        private final String from;
+        private final RawTransaction transaction;
+        private final long nonce;
+        private final long includeTime;
+
+        private PendingTx(String hash, String from, RawTransaction transaction, long nonce, long includeTime) {
+            this.hash = hash;
+            this.from = from;
+            this.transaction = transaction;
+            this.nonce = nonce;
+            this.includeTime = includeTime;
+        }
+    }
+}
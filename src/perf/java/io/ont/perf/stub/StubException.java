@@ -0,0 +1,18 @@
+package io.ont.perf.stub;
+
+
+/**
+ * 以JSON-RPC error返回给调用方
+ */
+class StubException extends Exception {
+    private final int code;
+
+    StubException(int code, String message) {
+        super(message);
+        this.code = code;
+    }
+
+    int getCode() {
+        return code;
+    }
+}
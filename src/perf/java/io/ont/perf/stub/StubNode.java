@@ -0,0 +1,244 @@
+package io.ont.perf.stub;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.ont.perf.PerfOptions;
+import org.web3j.utils.Numeric;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * 本地模拟EVM节点，支持单个及batch JSON-RPC请求，可注入延迟和错误率；GET / 返回统计信息。
+ * --ws-port大于0时同时开启WebSocket端点(newHeads订阅)，--ws-drop-interval定期断开连接，
+ * --no-block-receipts模拟不支持eth_getBlockReceipts的节点，--max-logs限制eth_getLogs单次返回的日志数
+ * <pre>
+ * mvn -Pperf compile exec:java -Dexec.mainClass=io.ont.perf.stub.StubNode \
+ *     -Dexec.args="--port 18545 --ws-port 18546 --block-time 1000 --confirm-delay 1000 --latency 5 --jitter 5 --error-rate 0.01"
+ * </pre>
+ */
+public class StubNode {
+    private final StubChain chain;
+    private final long blockTime;
+    private final int port;
+    private final int threads;
+    private final long latency;
+    private final long jitter;
+    private final double errorRate;
+    private final int wsPort;
+    private final long wsDropInterval;
+    private final boolean blockReceipts;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private HttpServer server;
+    private StubWsServer wsServer;
+
+    public StubNode(PerfOptions options) {
+        this.blockTime = options.getLong("block-time", 1000);
+        this.chain = new StubChain(options.getString("contract", "0x3F786d564b72CCf4CD4B65170358910fe2074Ff5"),
+                options.getLong("chain-id", 2021), blockTime, options.getLong("confirm-delay", 1000), (int) options.getLong("max-logs", 0));
+        this.port = (int) options.getLong("port", 18545);
+        this.threads = (int) options.getLong("threads", 64);
+        this.latency = options.getLong("latency", 0);
+        this.jitter = options.getLong("jitter", 0);
+        this.errorRate = options.getDouble("error-rate", 0);
+        this.wsPort = (int) options.getLong("ws-port", 0);
+        this.wsDropInterval = options.getLong("ws-drop-interval", 0);
+        this.blockReceipts = !options.getBoolean("no-block-receipts", false);
+    }
+
+    public static void main(String[] args) throws Exception {
+        StubNode node = new StubNode(new PerfOptions(args));
+        node.start();
+        System.out.println("stub node listening on http://127.0.0.1:" + node.port);
+        if (node.wsPort > 0) {
+            System.out.println("stub node listening on ws://127.0.0.1:" + node.wsPort);
+        }
+        Thread.currentThread().join();
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.setExecutor(Executors.newFixedThreadPool(threads));
+        server.createContext("/", this::handle);
+        server.start();
+        if (wsPort > 0) {
+            wsServer = new StubWsServer(wsPort, chain, this::dispatch, blockTime, wsDropInterval);
+            wsServer.start();
+        }
+    }
+
+    public void stop() throws InterruptedException {
+        server.stop(0);
+        if (wsServer != null) {
+            wsServer.stop(0);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String response;
+            if ("GET".equals(exchange.getRequestMethod())) {
+                response = stats();
+            } else {
+                String body = read(exchange.getRequestBody());
+                injectLatency();
+                Object request = JSON.parse(body);
+                if (request instanceof JSONArray) {
+                    batches.incrementAndGet();
+                    JSONArray results = new JSONArray();
+                    for (Object item : (JSONArray) request) {
+                        results.add(dispatch((JSONObject) item));
+                    }
+                    response = results.toJSONString();
+                } else {
+                    response = dispatch((JSONObject) request).toJSONString();
+                }
+            }
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (Exception e) {
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private JSONObject dispatch(JSONObject request) {
+        requests.incrementAndGet();
+        JSONObject response = new JSONObject();
+        response.put("jsonrpc", "2.0");
+        response.put("id", request.get("id"));
+        try {
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedErrors.incrementAndGet();
+                throw new StubException(-32000, "stub injected error");
+            }
+            response.put("result", invoke(request.getString("method"), request.getJSONArray("params")));
+        } catch (StubException e) {
+            JSONObject error = new JSONObject();
+            error.put("code", e.getCode());
+            error.put("message", e.getMessage());
+            response.put("error", error);
+        } catch (Exception e) {
+            JSONObject error = new JSONObject();
+            error.put("code", -32602);
+            error.put("message", "invalid params: " + e.getMessage());
+            response.put("error", error);
+        }
+        return response;
+    }
+
+    private Object invoke(String method, JSONArray params) throws StubException {
+        switch (method) {
+            case "eth_chainId":
+                return hex(chain.getChainId());
+            case "net_version":
+                return String.valueOf(chain.getChainId());
+            case "eth_blockNumber":
+                return hex(chain.blockNumber());
+            case "eth_gasPrice":
+                return "0x0";
+            case "eth_estimateGas":
+                return "0x30d40";
+            case "eth_getTransactionCount":
+                return chain.getTransactionCount(params.getString(0), params.size() > 1 ? params.getString(1) : "latest");
+            case "eth_sendRawTransaction":
+                return chain.sendRawTransaction(params.getString(0));
+            case "eth_getTransactionReceipt":
+                return chain.getTransactionReceipt(params.getString(0));
+            case "eth_getBlockReceipts":
+                if (!blockReceipts) {
+                    throw new StubException(-32601, "method not found: " + method);
+                }
+                return chain.getBlockReceipts(blockParameter(params.getString(0)));
+            case "eth_call":
+                JSONObject call = params.getJSONObject(0);
+                return chain.call(call.getString("to"), call.containsKey("data") ? call.getString("data") : call.getString("input"));
+            case "eth_getBlockByNumber":
+                return chain.getBlock(blockParameter(params.getString(0)));
+            case "eth_getLogs":
+                JSONObject filter = params.getJSONObject(0);
+                JSONArray topics = filter.getJSONArray("topics");
+                String topic0 = topics == null || topics.isEmpty() ? null : topics.getString(0);
+                Object address = filter.get("address");
+                if (address instanceof JSONArray) {
+                    address = ((JSONArray) address).isEmpty() ? null : ((JSONArray) address).getString(0);
+                }
+                return chain.getLogs(blockParameter(filter.getString("fromBlock")), blockParameter(filter.getString("toBlock")),
+                        (String) address, topic0);
+            default:
+                throw new StubException(-32601, "method not found: " + method);
+        }
+    }
+
+    private long blockParameter(String value) {
+        if (value == null || "latest".equals(value) || "pending".equals(value)) {
+            return chain.blockNumber();
+        }
+        if ("earliest".equals(value)) {
+            return 0;
+        }
+        return Numeric.toBigInt(value).longValue();
+    }
+
+    private void injectLatency() {
+        long delay = latency + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String stats() {
+        JSONObject stats = new JSONObject();
+        stats.put("requests", requests.get());
+        stats.put("batches", batches.get());
+        stats.put("injectedErrors", injectedErrors.get());
+        stats.put("transactions", chain.getTxCount());
+        stats.put("blockNumber", chain.blockNumber());
+        if (wsServer != null) {
+            stats.put("wsConnections", wsServer.getConnections().size());
+            stats.put("wsHeads", wsServer.getHeads());
+            stats.put("wsDrops", wsServer.getDrops());
+        }
+        return stats.toJSONString();
+    }
+
+    private static String hex(long value) {
+        return Numeric.toHexStringWithPrefix(BigInteger.valueOf(value));
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,153 @@
+package io.ont.perf.stub;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.java_websocket.WebSocket;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+
+/**
+ * 模拟节点的WebSocket端点：支持eth_subscribe newHeads，出块时按顺序推送区块头，其他方法与HTTP端点相同；
+ * drop-interval大于0时定期断开全部连接，用于验证客户端重连和补块
+ */
+class StubWsServer extends WebSocketServer {
+    private final StubChain chain;
+    private final Function<JSONObject, JSONObject> dispatcher;
+    private final long dropInterval;
+    private final long publishInterval;
+
+    private final Map<WebSocket, String> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicLong subscriptionIds = new AtomicLong();
+    private final AtomicLong heads = new AtomicLong();
+    private final AtomicLong drops = new AtomicLong();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "stub-ws-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long lastBlock;
+
+    StubWsServer(int port, StubChain chain, Function<JSONObject, JSONObject> dispatcher, long blockTime, long dropInterval) {
+        super(new InetSocketAddress("127.0.0.1", port));
+        this.chain = chain;
+        this.dispatcher = dispatcher;
+        this.dropInterval = dropInterval;
+        this.publishInterval = Math.max(10, blockTime / 20);
+        setReuseAddr(true);
+    }
+
+    long getHeads() {
+        return heads.get();
+    }
+
+    long getDrops() {
+        return drops.get();
+    }
+
+    @Override
+    public void onStart() {
+        lastBlock = chain.blockNumber();
+        scheduler.scheduleWithFixedDelay(this::publish, publishInterval, publishInterval, TimeUnit.MILLISECONDS);
+        if (dropInterval > 0) {
+            scheduler.scheduleWithFixedDelay(this::dropAll, dropInterval, dropInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void onOpen(WebSocket conn, ClientHandshake handshake) {
+    }
+
+    @Override
+    public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        subscriptions.remove(conn);
+    }
+
+    @Override
+    public void onMessage(WebSocket conn, String message) {
+        Object request = JSON.parse(message);
+        if (request instanceof JSONArray) {
+            JSONArray results = new JSONArray();
+            for (Object item : (JSONArray) request) {
+                results.add(handle(conn, (JSONObject) item));
+            }
+            conn.send(results.toJSONString());
+        } else {
+            conn.send(handle(conn, (JSONObject) request).toJSONString());
+        }
+    }
+
+    @Override
+    public void onError(WebSocket conn, Exception ex) {
+        if (conn != null) {
+            subscriptions.remove(conn);
+        }
+    }
+
+    private JSONObject handle(WebSocket conn, JSONObject request) {
+        String method = request.getString("method");
+        if (!"eth_subscribe".equals(method) && !"eth_unsubscribe".equals(method)) {
+            return dispatcher.apply(request);
+        }
+        JSONObject response = new JSONObject();
+        response.put("jsonrpc", "2.0");
+        response.put("id", request.get("id"));
+        JSONArray params = request.getJSONArray("params");
+        if ("eth_unsubscribe".equals(method)) {
+            response.put("result", subscriptions.remove(conn) != null);
+        } else if (params != null && "newHeads".equals(params.getString(0))) {
+            String id = "0x" + Long.toHexString(subscriptionIds.incrementAndGet());
+            subscriptions.put(conn, id);
+            response.put("result", id);
+        } else {
+            JSONObject error = new JSONObject();
+            error.put("code", -32602);
+            error.put("message", "unsupported subscription: " + params);
+            response.put("error", error);
+        }
+        return response;
+    }
+
+    private void publish() {
+        try {
+            long current = chain.blockNumber();
+            for (long number = lastBlock + 1; number <= current; number++) {
+                JSONObject head = chain.getBlock(number);
+                heads.incrementAndGet();
+                for (Map.Entry<WebSocket, String> entry : subscriptions.entrySet()) {
+                    JSONObject params = new JSONObject();
+                    params.put("subscription", entry.getValue());
+                    params.put("result", head);
+                    JSONObject notification = new JSONObject();
+                    notification.put("jsonrpc", "2.0");
+                    notification.put("method", "eth_subscription");
+                    notification.put("params", params);
+                    if (entry.getKey().isOpen()) {
+                        entry.getKey().send(notification.toJSONString());
+                    }
+                }
+            }
+            lastBlock = current;
+        } catch (Exception e) {
+            System.err.println("publish new heads error: " + e);
+        }
+    }
+
+    private void dropAll() {
+        for (WebSocket conn : getConnections()) {
+            drops.incrementAndGet();
+            conn.close(CloseFrame.GOING_AWAY, "stub drop");
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package io.ont.config;
+
+import io.ont.utils.ConfigParam;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.http.HttpService;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * 共用的OkHttpClient在并发请求下复用连接：连接数不超过并发数，与请求总数无关
+ */
+public class Web3jConfigTest {
+    private static final int THREADS = 16;
+    private static final int REQUESTS_PER_THREAD = 50;
+
+    private MockWebServer server;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                requests.incrementAndGet();
+                // 每个连接上的第一个请求序号为0
+                if (request.getSequenceNumber() == 0) {
+                    connections.incrementAndGet();
+                }
+                return new MockResponse()
+                        .setHeader("Content-Type", "application/json")
+                        .setBody("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\"0x10\"}");
+            }
+        });
+        server.start();
+
+        ConfigParam configParam = new ConfigParam();
+        configParam.EVM_RPC_MAX_REQUESTS = 256;
+        configParam.EVM_RPC_MAX_REQUESTS_PER_HOST = 256;
+        configParam.EVM_RPC_POOL_MAX_IDLE = 64;
+        configParam.EVM_RPC_POOL_KEEP_ALIVE = 300;
+        configParam.EVM_RPC_CONNECT_TIMEOUT = 5000;
+        configParam.EVM_RPC_READ_TIMEOUT = 5000;
+        configParam.EVM_RPC_WRITE_TIMEOUT = 5000;
+        Web3jConfig web3jConfig = new Web3jConfig();
+        ReflectionTestUtils.setField(web3jConfig, "configParam", configParam);
+        client = web3jConfig.rpcHttpClient();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+        server.shutdown();
+    }
+
+    @Test
+    public void reusesConnectionsUnderConcurrentLoad() throws Exception {
+        Web3j web3j = Web3j.build(new HttpService(server.url("/").toString(), client));
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < REQUESTS_PER_THREAD; j++) {
+                    assertEquals(BigInteger.valueOf(16), web3j.ethBlockNumber().send().getBlockNumber());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        web3j.shutdown();
+
+        assertEquals(THREADS * REQUESTS_PER_THREAD, requests.get());
+        assertTrue("connections: " + connections.get(), connections.get() <= THREADS);
+        assertTrue("idle connections: " + client.connectionPool().idleConnectionCount(), client.connectionPool().idleConnectionCount() <= THREADS);
+    }
+
+    @Test
+    public void sequentialRequestsShareOneConnection() throws Exception {
+        Web3j web3j = Web3j.build(new HttpService(server.url("/").toString(), client));
+        for (int i = 0; i < 100; i++) {
+            web3j.ethBlockNumber().send();
+        }
+        web3j.shutdown();
+
+        assertEquals(100, requests.get());
+        assertEquals(1, connections.get());
+    }
+}
@@ -0,0 +1,54 @@
+package io.ont.rpc;
+
+import io.ont.exception.EvmBusyException;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class AdmissionLimiterTest {
+    private final AtomicInteger rejected = new AtomicInteger();
+
+    @Test
+    public void rejectedRequestsReturnTheirRateToken() {
+        // 每秒2个令牌，并发1，不排队
+        AdmissionLimiter limiter = new AdmissionLimiter("write", 1, 0, 2, 1000, false, 2, rejected::incrementAndGet);
+        limiter.acquire();
+        for (int i = 0; i < 3; i++) {
+            try {
+                limiter.acquire();
+                fail("expected queue full");
+            } catch (EvmBusyException e) {
+                assertTrue(e.getMessage().contains("queue full"));
+            }
+        }
+        assertEquals(3, rejected.get());
+        // 被拒绝的请求没有占用令牌，下一个令牌不晚于现在
+        long nextPermitNanos = (long) ReflectionTestUtils.getField(limiter, "nextPermitNanos");
+        assertTrue(nextPermitNanos <= System.nanoTime());
+
+        limiter.release(1_000_000, 1, false);
+        long start = System.nanoTime();
+        limiter.acquire();
+        assertTrue(System.nanoTime() - start < 50_000_000);
+        assertEquals(1, limiter.getInflight());
+    }
+
+    @Test
+    public void rateLimitedRequestIsRejectedBeforeWaiting() {
+        AdmissionLimiter limiter = new AdmissionLimiter("read", 10, 10, 1, 100, false, 2, rejected::incrementAndGet);
+        limiter.acquire();
+        try {
+            limiter.acquire();
+            fail("expected rate limited");
+        } catch (EvmBusyException e) {
+            assertTrue(e.getMessage().contains("rate limited"));
+        }
+        assertEquals(1, limiter.getInflight());
+    }
+}
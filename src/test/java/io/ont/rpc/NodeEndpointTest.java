@@ -0,0 +1,79 @@
+package io.ont.rpc;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.methods.response.EthBlockNumber;
+import org.web3j.protocol.http.HttpService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class NodeEndpointTest {
+    private static final int EJECT_FAILURES = 3;
+
+    private MockWebServer server;
+    private NodeEndpoint endpoint;
+    private Web3j web3j;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        String url = server.url("/").toString();
+        HttpService service = new HttpService(url, new OkHttpClient());
+        endpoint = new NodeEndpoint(url, service, EJECT_FAILURES, 30000);
+        // 只用来构造请求，请求直接经endpoint发送
+        web3j = Web3j.build(service);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        web3j.shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    public void internalErrorsEjectTheNode() throws Exception {
+        for (int i = 0; i < EJECT_FAILURES; i++) {
+            enqueue("{\"jsonrpc\":\"2.0\",\"id\":1,\"error\":{\"code\":-32603,\"message\":\"internal error\"}}");
+            assertTrue(endpoint.isHealthy());
+            EthBlockNumber response = endpoint.send(web3j.ethBlockNumber(), EthBlockNumber.class);
+            assertEquals(-32603, response.getError().getCode());
+        }
+        assertFalse(endpoint.isHealthy());
+    }
+
+    @Test
+    public void revertsDoNotCount() throws Exception {
+        for (int i = 0; i < EJECT_FAILURES * 2; i++) {
+            enqueue("{\"jsonrpc\":\"2.0\",\"id\":1,\"error\":{\"code\":3,\"message\":\"execution reverted\",\"data\":\"0x\"}}");
+            enqueue("{\"jsonrpc\":\"2.0\",\"id\":1,\"error\":{\"code\":-32000,\"message\":\"nonce too low\"}}");
+            endpoint.send(web3j.ethBlockNumber(), EthBlockNumber.class);
+            endpoint.send(web3j.ethBlockNumber(), EthBlockNumber.class);
+        }
+        assertTrue(endpoint.isHealthy());
+    }
+
+    @Test
+    public void batchWithNodeErrorsCounts() throws Exception {
+        for (int i = 0; i < EJECT_FAILURES; i++) {
+            enqueue("[{\"jsonrpc\":\"2.0\",\"id\":0,\"result\":\"0x10\"},"
+                    + "{\"jsonrpc\":\"2.0\",\"id\":1,\"error\":{\"code\":-32000,\"message\":\"header not found\"}}]");
+            BatchResponse response = endpoint.sendBatch(web3j.newBatch().add(web3j.ethBlockNumber()).add(web3j.ethBlockNumber()));
+            assertEquals(2, response.getResponses().size());
+        }
+        assertFalse(endpoint.isHealthy());
+    }
+
+    private void enqueue(String body) {
+        server.enqueue(new MockResponse().setHeader("Content-Type", "application/json").setBody(body));
+    }
+}
@@ -0,0 +1,107 @@
+package io.ont.rpc;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Test;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterName;
+import org.web3j.protocol.http.HttpService;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class RoutingWeb3jServiceTest {
+    private static final long NODE_DELAY = 200;
+
+    private final List<MockWebServer> servers = new ArrayList<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final OkHttpClient client = new OkHttpClient();
+    private Web3j web3j;
+
+    @After
+    public void tearDown() throws Exception {
+        if (web3j != null) {
+            web3j.shutdown();
+        }
+        for (MockWebServer server : servers) {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void pendingNonceIsNotHedged() throws Exception {
+        web3j = Web3j.build(routing(2, 8));
+        BigInteger nonce = web3j.ethGetTransactionCount("0x0000000000000000000000000000000000000001", DefaultBlockParameterName.PENDING)
+                .send().getTransactionCount();
+
+        assertEquals(BigInteger.valueOf(16), nonce);
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void slowReadIsHedged() throws Exception {
+        web3j = Web3j.build(routing(2, 8));
+        assertEquals(BigInteger.valueOf(16), web3j.ethBlockNumber().send().getBlockNumber());
+        // 第二个请求在对冲延迟后发出，等它也到达节点
+        for (int i = 0; i < 50 && requests.get() < 2; i++) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void exhaustedPoolRunsOnCaller() throws Exception {
+        int hedgeThreads = 2;
+        web3j = Web3j.build(routing(2, hedgeThreads));
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        List<Future<BigInteger>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(callers.submit(() -> web3j.ethBlockNumber().send().getBlockNumber()));
+        }
+        for (Future<BigInteger> future : futures) {
+            assertEquals(BigInteger.valueOf(16), future.get(30, TimeUnit.SECONDS));
+        }
+        callers.shutdown();
+
+        long hedgeThreadCount = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("rpc-hedge-")).count();
+        assertTrue("hedge threads: " + hedgeThreadCount, hedgeThreadCount <= hedgeThreads);
+    }
+
+    private RoutingWeb3jService routing(int nodes, int hedgeThreads) throws Exception {
+        List<NodeEndpoint> endpoints = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            MockWebServer server = new MockWebServer();
+            server.setDispatcher(new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) {
+                    requests.incrementAndGet();
+                    return new MockResponse()
+                            .setHeader("Content-Type", "application/json")
+                            .setBody("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\"0x10\"}")
+                            .setHeadersDelay(NODE_DELAY, TimeUnit.MILLISECONDS);
+                }
+            });
+            server.start();
+            servers.add(server);
+            String url = server.url("/").toString();
+            endpoints.add(new NodeEndpoint(url, new HttpService(url, client), 3, 30000));
+        }
+        return new RoutingWeb3jService(endpoints, true, 20, hedgeThreads, Collections.emptyMap());
+    }
+}
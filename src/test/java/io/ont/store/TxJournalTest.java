@@ -0,0 +1,105 @@
+package io.ont.store;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.ont.bean.JournalEntry;
+import io.ont.utils.ConfigParam;
+import io.ont.utils.Constant;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+
+public class TxJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ConfigParam configParam;
+    private TxJournal journal;
+
+    @Before
+    public void setUp() throws Exception {
+        configParam = new ConfigParam();
+        configParam.EVM_JOURNAL_ENABLED = true;
+        configParam.EVM_JOURNAL_DIR = folder.getRoot().getPath();
+        // 每批写入后都滚动
+        configParam.EVM_JOURNAL_SEGMENT_SIZE = 1;
+        configParam.EVM_TX_STATUS_TTL = 3600;
+        journal = open();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        journal.close();
+    }
+
+    @Test
+    public void rotationKeepsResolvedStatuses() throws Exception {
+        journal.sent(Collections.singletonList(entry("0x01"))).join();
+        journal.resolved("0x01", Constant.TX_SUCCESS, "7");
+        journal.sent(Collections.singletonList(entry("0x02"))).join();
+        journal.resolved("0x02", Constant.TX_DROPPED, null);
+        // 同一线程按顺序落盘，等这条完成时前面的已完结记录和滚动都已完成
+        journal.sent(Collections.singletonList(entry("0x03"))).join();
+        journal.close();
+
+        journal = open();
+        Map<String, JournalEntry> recovered = new HashMap<>();
+        for (JournalEntry entry : journal.takeRecovered()) {
+            recovered.put(entry.getTxHash(), entry);
+        }
+        assertEquals(3, recovered.size());
+        assertEquals(Constant.TX_SUCCESS, recovered.get("0x01").getStatus());
+        assertEquals("7", recovered.get("0x01").getNftId());
+        assertEquals("mint", recovered.get("0x01").getFunction());
+        assertEquals(Constant.TX_DROPPED, recovered.get("0x02").getStatus());
+        assertNull(recovered.get("0x03").getStatus());
+        assertEquals("0xf803", recovered.get("0x03").getTxHex());
+    }
+
+    @Test
+    public void expiredStatusesAreDroppedOnRotation() throws Exception {
+        journal.sent(Collections.singletonList(entry("0x01"))).join();
+        journal.resolved("0x01", Constant.TX_FAILED, null);
+        configParam.EVM_TX_STATUS_TTL = -1;
+        journal.sent(Collections.singletonList(entry("0x02"))).join();
+        journal.sent(Collections.singletonList(entry("0x03"))).join();
+        journal.close();
+
+        configParam.EVM_TX_STATUS_TTL = 3600;
+        journal = open();
+        List<JournalEntry> recovered = journal.takeRecovered();
+        assertEquals(2, recovered.size());
+        for (JournalEntry entry : recovered) {
+            assertNull(entry.getStatus());
+        }
+    }
+
+    private TxJournal open() throws Exception {
+        TxJournal txJournal = new TxJournal();
+        ReflectionTestUtils.setField(txJournal, "configParam", configParam);
+        ReflectionTestUtils.setField(txJournal, "meterRegistry", new SimpleMeterRegistry());
+        txJournal.open();
+        return txJournal;
+    }
+
+    private static JournalEntry entry(String txHash) {
+        JournalEntry entry = new JournalEntry();
+        entry.setTxHash(txHash);
+        entry.setFunction("mint");
+        entry.setAddress("0xabc");
+        entry.setTxHex("0xf8" + txHash.substring(2));
+        entry.setTime(System.currentTimeMillis());
+        return entry;
+    }
+}
@@ -0,0 +1,201 @@
+package io.ont.utils;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.java_websocket.WebSocket;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.web3j.protocol.Web3j;
+
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class BlockSubscriberTest {
+    private static final long WAIT_MILLIS = 5000;
+
+    private StubNode node;
+    private BlockSubscriber subscriber;
+    private ReceiptResolver receiptResolver;
+
+    @Before
+    public void setUp() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        node = new StubNode(port);
+        node.start();
+        waitFor(node::isStarted);
+
+        ConfigParam configParam = new ConfigParam();
+        configParam.EVM_WS_URL = "ws://127.0.0.1:" + port;
+        configParam.EVM_WS_RECONNECT_DELAY = 100;
+        configParam.EVM_WS_CATCHUP_BLOCKS = 100;
+        configParam.EVM_BLOCK_INTERVAL = 1000;
+        EvmMetrics evmMetrics = new EvmMetrics();
+        ReflectionTestUtils.setField(evmMetrics, "meterRegistry", new SimpleMeterRegistry());
+        Web3jSdkUtil web3jSdkUtil = Mockito.mock(Web3jSdkUtil.class);
+        when(web3jSdkUtil.getLatestBlockNumber()).thenAnswer(invocation -> BigInteger.valueOf(node.block.get()));
+        receiptResolver = Mockito.mock(ReceiptResolver.class);
+
+        subscriber = new BlockSubscriber();
+        ReflectionTestUtils.setField(subscriber, "configParam", configParam);
+        ReflectionTestUtils.setField(subscriber, "web3jSdkUtil", web3jSdkUtil);
+        ReflectionTestUtils.setField(subscriber, "receiptResolver", receiptResolver);
+        ReflectionTestUtils.setField(subscriber, "blockTracker", Mockito.mock(BlockTracker.class));
+        ReflectionTestUtils.setField(subscriber, "evmMetrics", evmMetrics);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        subscriber.stop();
+        node.stop(1000);
+    }
+
+    @Test
+    public void newHeadResolvesThatBlock() throws Exception {
+        subscriber.start();
+        waitFor(() -> node.subscriptions.size() == 1);
+
+        node.publish(11);
+        verify(receiptResolver, timeout(WAIT_MILLIS)).onBlock(11);
+        node.publish(12);
+        verify(receiptResolver, timeout(WAIT_MILLIS)).onBlock(12);
+    }
+
+    @Test
+    public void reconnectCatchesUpAndShutsDownOldClient() throws Exception {
+        subscriber.start();
+        waitFor(() -> node.subscriptions.size() == 1);
+        node.publish(11);
+        verify(receiptResolver, timeout(WAIT_MILLIS)).onBlock(11);
+        Web3j first = (Web3j) ReflectionTestUtils.getField(subscriber, "web3j");
+
+        // 断线期间出了3个块
+        node.block.set(14);
+        node.dropAll();
+        verify(receiptResolver, timeout(WAIT_MILLIS)).onBlock(12);
+        verify(receiptResolver, timeout(WAIT_MILLIS)).onBlock(13);
+        verify(receiptResolver, timeout(WAIT_MILLIS)).onBlock(14);
+        waitFor(() -> node.subscriptions.size() == 1);
+
+        Web3j second = (Web3j) ReflectionTestUtils.getField(subscriber, "web3j");
+        assertNotSame(first, second);
+        assertTrue(((ScheduledExecutorService) ReflectionTestUtils.getField(first, "scheduledExecutorService")).isShutdown());
+
+        node.publish(15);
+        verify(receiptResolver, timeout(WAIT_MILLIS)).onBlock(15);
+    }
+
+    private static void waitFor(Condition condition) throws Exception {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (!condition.test()) {
+            assertTrue("condition not met in " + WAIT_MILLIS + "ms", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private interface Condition {
+        boolean test() throws Exception;
+    }
+
+    /**
+     * 只支持eth_subscribe newHeads的WebSocket节点，由测试推送区块头和断开连接
+     */
+    private static class StubNode extends WebSocketServer {
+        private final AtomicLong block = new AtomicLong(10);
+        private final Map<WebSocket, String> subscriptions = new ConcurrentHashMap<>();
+        private final AtomicLong subscriptionIds = new AtomicLong();
+        private volatile boolean started;
+
+        private StubNode(int port) {
+            super(new InetSocketAddress("127.0.0.1", port));
+            setReuseAddr(true);
+        }
+
+        private boolean isStarted() {
+            return started;
+        }
+
+        private void publish(long number) {
+            block.set(number);
+            JSONObject head = new JSONObject();
+            head.put("number", "0x" + Long.toHexString(number));
+            head.put("hash", String.format("0x%064x", number));
+            for (Map.Entry<WebSocket, String> entry : subscriptions.entrySet()) {
+                JSONObject params = new JSONObject();
+                params.put("subscription", entry.getValue());
+                params.put("result", head);
+                JSONObject notification = new JSONObject();
+                notification.put("jsonrpc", "2.0");
+                notification.put("method", "eth_subscription");
+                notification.put("params", params);
+                entry.getKey().send(notification.toJSONString());
+            }
+        }
+
+        private void dropAll() {
+            for (WebSocket conn : getConnections()) {
+                conn.close(CloseFrame.GOING_AWAY, "stub drop");
+            }
+        }
+
+        @Override
+        public void onStart() {
+            started = true;
+        }
+
+        @Override
+        public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        }
+
+        @Override
+        public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+            subscriptions.remove(conn);
+        }
+
+        @Override
+        public void onMessage(WebSocket conn, String message) {
+            JSONObject request = JSON.parseObject(message);
+            JSONObject response = new JSONObject();
+            response.put("jsonrpc", "2.0");
+            response.put("id", request.get("id"));
+            if ("eth_subscribe".equals(request.getString("method"))) {
+                String id = "0x" + Long.toHexString(subscriptionIds.incrementAndGet());
+                response.put("result", id);
+                conn.send(response.toJSONString());
+                subscriptions.put(conn, id);
+            } else {
+                response.put("result", subscriptions.remove(conn) != null);
+                conn.send(response.toJSONString());
+            }
+        }
+
+        @Override
+        public void onError(WebSocket conn, Exception ex) {
+            if (conn != null) {
+                subscriptions.remove(conn);
+            }
+        }
+    }
+}
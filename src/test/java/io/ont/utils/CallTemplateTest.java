@@ -0,0 +1,207 @@
+package io.ont.utils;
+
+import io.ont.exception.EvmDemoException;
+import org.junit.Test;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.FunctionReturnDecoder;
+import org.web3j.abi.TypeEncoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.Utils;
+import org.web3j.abi.datatypes.Address;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.generated.Bytes32;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * CallTemplate与web3j FunctionEncoder/FunctionReturnDecoder的编码、解码结果逐字节一致
+ */
+public class CallTemplateTest {
+    private static final BigInteger TWO_POW_63 = BigInteger.ONE.shiftLeft(63);
+    private static final BigInteger MAX_UINT256 = BigInteger.ONE.shiftLeft(256).subtract(BigInteger.ONE);
+    private static final List<BigInteger> EDGE_IDS = Arrays.asList(
+            BigInteger.ZERO, BigInteger.ONE, BigInteger.valueOf(255), BigInteger.valueOf(Long.MAX_VALUE),
+            TWO_POW_63, TWO_POW_63.add(BigInteger.ONE), BigInteger.ONE.shiftLeft(128), MAX_UINT256.subtract(BigInteger.ONE), MAX_UINT256);
+    private static final List<String> EDGE_ADDRESSES = Arrays.asList(
+            "0x0000000000000000000000000000000000000000", "0x0000000000000000000000000000000000000001",
+            "0xffffffffffffffffffffffffffffffffffffffff", "0x8000000000000000000000000000000000000000",
+            "0x3F786d564b72CCf4CD4B65170358910fe2074Ff5");
+    private static final int RANDOM_CASES = 2000;
+
+    private final Random random = new Random(20211018);
+
+    @Test
+    public void mintMatchesFunctionEncoder() {
+        List<byte[]> hashes = new ArrayList<>(Arrays.asList(new byte[32], filled((byte) 0xff), filled((byte) 0x80), filled((byte) 0x0f)));
+        for (int i = 0; i < RANDOM_CASES; i++) {
+            hashes.add(randomBytes(32));
+        }
+        for (byte[] hash : hashes) {
+            assertEncodeEquals(CallTemplate.MINT, Collections.singletonList(new Bytes32(hash)));
+        }
+    }
+
+    @Test
+    public void transferMatchesFunctionEncoder() {
+        for (String address : EDGE_ADDRESSES) {
+            for (BigInteger id : EDGE_IDS) {
+                assertEncodeEquals(CallTemplate.TRANSFER, Arrays.asList(new Address(address), new Uint256(id)));
+            }
+        }
+        for (int i = 0; i < RANDOM_CASES; i++) {
+            assertEncodeEquals(CallTemplate.TRANSFER, Arrays.asList(new Address(Numeric.toHexString(randomBytes(20))), new Uint256(randomId())));
+        }
+    }
+
+    @Test
+    public void tokenIdCallsMatchFunctionEncoder() {
+        List<BigInteger> ids = new ArrayList<>(EDGE_IDS);
+        for (int i = 0; i < RANDOM_CASES; i++) {
+            ids.add(randomId());
+        }
+        for (BigInteger id : ids) {
+            List<Type> params = Collections.singletonList(new Uint256(id));
+            assertEncodeEquals(CallTemplate.BURN, params);
+            assertEncodeEquals(CallTemplate.GET_META_DATA, params);
+            assertEncodeEquals(CallTemplate.OWNER_OF, params);
+        }
+    }
+
+    @Test
+    public void getMetaDataMatchesFunctionReturnDecoder() {
+        List<TypeReference<?>> outputs = Collections.singletonList(new TypeReference<Bytes32>() {
+        });
+        List<String> values = new ArrayList<>(Arrays.asList(word(new byte[32]), word(filled((byte) 0xff)), word(filled((byte) 0x80))));
+        for (int i = 0; i < RANDOM_CASES; i++) {
+            values.add(word(randomBytes(32)));
+        }
+        // 节点返回大写16进制时结果一致
+        values.add(word(randomBytes(32)).toUpperCase().replace("0X", "0x"));
+        for (String value : values) {
+            assertDecodeEquals(CallTemplate.GET_META_DATA, value, outputs);
+        }
+    }
+
+    @Test
+    public void ownerOfMatchesFunctionReturnDecoder() {
+        List<TypeReference<?>> outputs = Collections.singletonList(new TypeReference<Address>() {
+        });
+        List<String> values = new ArrayList<>();
+        for (String address : EDGE_ADDRESSES) {
+            values.add(FunctionEncoder.encodeConstructor(Collections.singletonList(new Address(address))));
+        }
+        for (int i = 0; i < RANDOM_CASES; i++) {
+            values.add(FunctionEncoder.encodeConstructor(Collections.singletonList(new Address(Numeric.toHexString(randomBytes(20))))));
+        }
+        for (String value : values) {
+            assertDecodeEquals(CallTemplate.OWNER_OF, value.startsWith("0x") ? value : "0x" + value, outputs);
+        }
+    }
+
+    @Test
+    public void emptyResultsDecodeToEmptyList() {
+        List<TypeReference<?>> outputs = Collections.singletonList(new TypeReference<Address>() {
+        });
+        for (String value : Arrays.asList("0x", "")) {
+            assertEquals(FunctionReturnDecoder.decode(value, Utils.convert(outputs)), CallTemplate.OWNER_OF.decode(value));
+            assertTrue(CallTemplate.GET_META_DATA.decode(value).isEmpty());
+        }
+        assertTrue(CallTemplate.OWNER_OF.decode(null).isEmpty());
+    }
+
+    @Test
+    public void shortResultsDecodeToEmptyList() {
+        // 不足一个字的返回值：FunctionReturnDecoder抛ArrayIndexOutOfBoundsException或把残缺的字补齐后解码，
+        // 模板按空结果处理，调用方报"empty result"
+        for (String value : Arrays.asList("0x0", "0x00", "0x1234", "0x" + repeat('0', 62), "0x" + repeat('f', 63))) {
+            assertTrue(value, CallTemplate.OWNER_OF.decode(value).isEmpty());
+            assertTrue(value, CallTemplate.GET_META_DATA.decode(value).isEmpty());
+        }
+    }
+
+    @Test
+    public void writeMethodsHaveNoReturnValue() {
+        for (CallTemplate template : Arrays.asList(CallTemplate.MINT, CallTemplate.TRANSFER, CallTemplate.BURN)) {
+            try {
+                template.decode(word(new byte[32]));
+                fail(template.getSignature());
+            } catch (EvmDemoException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void rejectsWrongArguments() {
+        try {
+            CallTemplate.TRANSFER.encode(Collections.singletonList(new Uint256(BigInteger.ONE)));
+            fail();
+        } catch (EvmDemoException e) {
+            // expected
+        }
+        try {
+            CallTemplate.BURN.encode(Collections.singletonList(new Bytes32(new byte[32])));
+            fail();
+        } catch (EvmDemoException e) {
+            // expected
+        }
+    }
+
+    private static void assertEncodeEquals(CallTemplate template, List<Type> params) {
+        String expected = FunctionEncoder.encode(new Function(nameOf(template), params, Collections.emptyList()));
+        assertEquals(template.getSignature() + " " + params, expected, template.encode(params));
+        assertEquals(expected.substring(10), template.encodeArguments(params));
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static void assertDecodeEquals(CallTemplate template, String value, List<TypeReference<?>> outputs) {
+        List<Type> expected = FunctionReturnDecoder.decode(value, Utils.convert(outputs));
+        List<Type> actual = template.decode(value);
+        assertEquals(value, expected, actual);
+        assertEquals(value, TypeEncoder.encode(expected.get(0)), TypeEncoder.encode(actual.get(0)));
+    }
+
+    private static String nameOf(CallTemplate template) {
+        return template.getSignature().substring(0, template.getSignature().indexOf('('));
+    }
+
+    private BigInteger randomId() {
+        // 各种位长都要覆盖，包括long范围内外的分界
+        return new BigInteger(1 + random.nextInt(256), random);
+    }
+
+    private byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] filled(byte value) {
+        byte[] bytes = new byte[32];
+        Arrays.fill(bytes, value);
+        return bytes;
+    }
+
+    private static String word(byte[] bytes) {
+        return Numeric.toHexString(bytes);
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
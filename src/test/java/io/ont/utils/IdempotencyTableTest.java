@@ -0,0 +1,92 @@
+package io.ont.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+
+public class IdempotencyTableTest {
+    private IdempotencyTable table;
+    private final AtomicInteger sent = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        ConfigParam configParam = new ConfigParam();
+        configParam.EVM_IDEMPOTENCY_SIZE = 1000;
+        configParam.EVM_IDEMPOTENCY_TTL = 600;
+        table = new IdempotencyTable();
+        ReflectionTestUtils.setField(table, "configParam", configParam);
+        ReflectionTestUtils.setField(table, "meterRegistry", new SimpleMeterRegistry());
+        table.init();
+    }
+
+    @Test
+    public void inFlightDuplicatesShareOneTransaction() {
+        IdempotencyTable.Key key = IdempotencyTable.key(Constant.TRANSFER, "0xA", null, "0xb", "1");
+        IdempotencyTable.Submission first = table.submit(key, this::pending);
+        IdempotencyTable.Submission second = table.submit(IdempotencyTable.key(Constant.TRANSFER, "0xa", null, "0xB", "1"), this::pending);
+
+        assertSame(first, second);
+        assertEquals(1, sent.get());
+    }
+
+    @Test
+    public void defaultKeyIsEvictedOnceReceiptResolves() {
+        // A->B，B->A之后再次A->B是新的转账
+        IdempotencyTable.Key key = IdempotencyTable.key(Constant.TRANSFER, "0xa", null, "0xb", "1");
+        IdempotencyTable.Submission first = table.submit(key, this::pending);
+        first.getTxHash().complete("0x01");
+        first.getReceipt().complete(new TransactionReceipt());
+
+        IdempotencyTable.Submission second = table.submit(key, this::pending);
+        assertNotSame(first, second);
+        assertEquals(2, sent.get());
+    }
+
+    @Test
+    public void defaultKeyIsKeptOnReceiptTimeout() {
+        // 超时的交易仍可能落账，相同请求不能再发一笔
+        IdempotencyTable.Key key = IdempotencyTable.key(Constant.MINT, "0xa", null, "ab");
+        IdempotencyTable.Submission first = table.submit(key, this::pending);
+        first.getTxHash().complete("0x01");
+        first.getReceipt().complete(null);
+
+        assertSame(first, table.submit(key, this::pending));
+        assertEquals(1, sent.get());
+    }
+
+    @Test
+    public void clientKeyKeepsCompletedResult() {
+        IdempotencyTable.Key key = IdempotencyTable.key(Constant.BURN, "0xa", "client-1", "1");
+        IdempotencyTable.Submission first = table.submit(key, this::pending);
+        first.getTxHash().complete("0x01");
+        first.getReceipt().complete(new TransactionReceipt());
+
+        assertSame(first, table.submit(key, this::pending));
+        assertEquals(1, sent.get());
+    }
+
+    @Test
+    public void rejectedSendIsRetried() {
+        IdempotencyTable.Key key = IdempotencyTable.key(Constant.BURN, "0xa", "client-1", "1");
+        IdempotencyTable.Submission first = table.submit(key, this::pending);
+        first.getTxHash().completeExceptionally(new IllegalStateException("rejected"));
+
+        assertNotSame(first, table.submit(key, this::pending));
+        assertEquals(2, sent.get());
+    }
+
+    private IdempotencyTable.Submission pending() {
+        sent.incrementAndGet();
+        return new IdempotencyTable.Submission(new CompletableFuture<>(), new CompletableFuture<>());
+    }
+}
@@ -0,0 +1,92 @@
+package io.ont.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+
+public class NonceManagerTest {
+    private static final String ADDRESS = "0xAbC";
+
+    private NonceManager nonceManager;
+    private Web3jSdkUtil web3jSdkUtil;
+
+    @Before
+    public void setUp() throws Exception {
+        web3jSdkUtil = Mockito.mock(Web3jSdkUtil.class);
+        when(web3jSdkUtil.getPendingTransactionCount(anyString())).thenReturn(BigInteger.valueOf(10));
+        nonceManager = new NonceManager();
+        ReflectionTestUtils.setField(nonceManager, "web3jSdkUtil", web3jSdkUtil);
+    }
+
+    @Test
+    public void acquireWaitsForDeferredResync() throws Exception {
+        assertEquals(BigInteger.valueOf(10), nonceManager.acquire(ADDRESS, 3));
+        // 10被拒绝，11、12已签名待发送，节点pending仍是10
+        nonceManager.settle(ADDRESS, 1);
+        nonceManager.resync(ADDRESS);
+
+        // 等待期间继续有分配，都不能排到13之后
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<BigInteger> first = executor.submit(() -> nonceManager.acquire(ADDRESS));
+            Future<BigInteger> second = executor.submit(() -> nonceManager.acquire("0xabc"));
+            Thread.sleep(200);
+            assertFalse(first.isDone());
+            assertFalse(second.isDone());
+
+            nonceManager.settle(ADDRESS, 1);
+            Thread.sleep(100);
+            assertFalse(first.isDone());
+            assertFalse(second.isDone());
+
+            nonceManager.settle(ADDRESS, 1);
+            Set<BigInteger> nonces = new HashSet<>();
+            nonces.add(first.get(5, TimeUnit.SECONDS));
+            nonces.add(second.get(5, TimeUnit.SECONDS));
+            assertEquals(new HashSet<>(Arrays.asList(BigInteger.valueOf(10), BigInteger.valueOf(11))), nonces);
+            Mockito.verify(web3jSdkUtil, Mockito.times(2)).getPendingTransactionCount(anyString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void resyncWithoutOutstandingNoncesIsImmediate() throws Exception {
+        nonceManager.acquire(ADDRESS);
+        nonceManager.settle(ADDRESS, 1);
+        nonceManager.resync(ADDRESS);
+        when(web3jSdkUtil.getPendingTransactionCount(anyString())).thenReturn(BigInteger.valueOf(20));
+        assertEquals(BigInteger.valueOf(20), nonceManager.acquire(ADDRESS));
+    }
+
+    @Test
+    public void rollbackReturnsUnsentNonces() throws Exception {
+        BigInteger nonce = nonceManager.acquire(ADDRESS, 2);
+        nonceManager.rollback(ADDRESS, nonce, 2);
+        assertEquals(BigInteger.valueOf(10), nonceManager.acquire(ADDRESS));
+        Mockito.verify(web3jSdkUtil, Mockito.times(1)).getPendingTransactionCount(anyString());
+    }
+
+    @Test
+    public void replacementUnderpricedIsNonceError() {
+        assertTrue(nonceManager.isNonceError("replacement transaction underpriced"));
+        assertTrue(nonceManager.isNonceError("Nonce too low: next nonce 3"));
+    }
+}
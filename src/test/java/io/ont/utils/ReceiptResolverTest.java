@@ -0,0 +1,74 @@
+package io.ont.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+
+public class ReceiptResolverTest {
+    private static final String TX_HASH = "0x01";
+
+    private ReceiptResolver resolver;
+    private Web3jSdkUtil web3jSdkUtil;
+
+    @Before
+    public void setUp() {
+        ConfigParam configParam = new ConfigParam();
+        configParam.EVM_RECEIPT_INTERVAL = 20;
+        configParam.EVM_RECEIPT_TIMEOUT = 100;
+        configParam.EVM_RECEIPT_BATCH_SIZE = 100;
+        configParam.EVM_RECEIPT_LATE_INTERVAL = 200;
+        configParam.EVM_RECEIPT_LATE_TIMEOUT = 5000;
+        configParam.EVM_WS_POLL_INTERVAL = 1000;
+        EvmMetrics evmMetrics = new EvmMetrics();
+        ReflectionTestUtils.setField(evmMetrics, "meterRegistry", new SimpleMeterRegistry());
+        web3jSdkUtil = Mockito.mock(Web3jSdkUtil.class);
+        resolver = new ReceiptResolver();
+        ReflectionTestUtils.setField(resolver, "configParam", configParam);
+        ReflectionTestUtils.setField(resolver, "web3jSdkUtil", web3jSdkUtil);
+        ReflectionTestUtils.setField(resolver, "evmMetrics", evmMetrics);
+        resolver.start();
+    }
+
+    @After
+    public void tearDown() {
+        resolver.stop();
+    }
+
+    @Test
+    public void timedOutTransactionIsStillResolvedWhenMinedLate() throws Exception {
+        when(web3jSdkUtil.getReceiptsByHash(anyList())).thenReturn(Collections.emptyMap());
+        assertNull(resolver.resolve(TX_HASH).get(2, TimeUnit.SECONDS));
+
+        CompletableFuture<TransactionReceipt> late = resolver.watch(TX_HASH);
+        Thread.sleep(300);
+        assertFalse(late.isDone());
+
+        TransactionReceipt receipt = new TransactionReceipt();
+        receipt.setTransactionHash(TX_HASH);
+        when(web3jSdkUtil.getReceiptsByHash(anyList())).thenReturn(Collections.singletonMap(TX_HASH, receipt));
+        assertSame(receipt, late.get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void lateWatchGivesUpAfterLateTimeout() throws Exception {
+        ReflectionTestUtils.setField(ReflectionTestUtils.getField(resolver, "configParam"), "EVM_RECEIPT_LATE_TIMEOUT", 300L);
+        when(web3jSdkUtil.getReceiptsByHash(anyList())).thenReturn(Collections.emptyMap());
+
+        assertNull(resolver.watch(TX_HASH).get(2, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,47 @@
+package io.ont.utils;
+
+import org.junit.Test;
+import org.web3j.protocol.core.methods.response.Log;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+
+public class TransferEventTest {
+    private static final String FROM = "0x000000000000000000000000" + "1111111111111111111111111111111111111111";
+    private static final String TO = "0x000000000000000000000000" + "AbCdEf0000000000000000000000000000000002";
+    private static final String ZERO = "0x" + String.format("%064d", 0);
+
+    @Test
+    public void decodesOwnerAndTokenId() {
+        TransferEvent event = TransferEvent.decode(log(Constant.TRANSFER_EVENT_HASH, FROM, TO, tokenId(300)));
+        assertEquals("300", event.getNftId());
+        assertEquals("0xabcdef0000000000000000000000000000000002", event.getOwner());
+    }
+
+    @Test
+    public void burnHasNoOwner() {
+        TransferEvent event = TransferEvent.decode(log(Constant.TRANSFER_EVENT_HASH, FROM, ZERO, tokenId(1)));
+        assertEquals("1", event.getNftId());
+        assertNull(event.getOwner());
+    }
+
+    @Test
+    public void otherLogsAreSkipped() {
+        // ERC20 Transfer的value不是indexed，只有3个topic
+        assertNull(TransferEvent.decode(log(Constant.TRANSFER_EVENT_HASH, FROM, TO)));
+        assertNull(TransferEvent.decode(log(ZERO, FROM, TO, tokenId(1))));
+    }
+
+    private static String tokenId(long id) {
+        return String.format("0x%064x", id);
+    }
+
+    private static Log log(String... topics) {
+        Log txLog = new Log();
+        txLog.setTopics(Arrays.asList(topics));
+        return txLog;
+    }
+}
@@ -0,0 +1,150 @@
+package io.ont.utils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.Sign;
+import org.web3j.crypto.TransactionEncoder;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * TxSigner自行实现的签名与web3j TransactionEncoder.signMessage/Sign.signMessage逐字节一致
+ */
+public class TxSignerTest {
+    private static final BigInteger N = Sign.CURVE_PARAMS.getN();
+    private static final List<Long> CHAIN_IDS = Arrays.asList(1L, 3L, 56L, 137L, 2021L, 1337L, 43114L, 11297108109L);
+    private static final List<BigInteger> EDGE_NONCES = Arrays.asList(
+            BigInteger.ZERO, BigInteger.ONE, BigInteger.valueOf(127), BigInteger.valueOf(128), BigInteger.valueOf(255),
+            BigInteger.valueOf(256), BigInteger.valueOf(Long.MAX_VALUE), BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE));
+    private static final int RANDOM_KEYS = 300;
+
+    private final Random random = new Random(20211018);
+    private ConfigParam configParam;
+    private TxSigner txSigner;
+
+    @Before
+    public void setUp() {
+        configParam = new ConfigParam();
+        configParam.EVM_SIGN_THREADS = 2;
+        configParam.EVM_SIGN_QUEUE_SIZE = 100;
+        txSigner = new TxSigner();
+        ReflectionTestUtils.setField(txSigner, "configParam", configParam);
+        ReflectionTestUtils.setField(txSigner, "meterRegistry", new SimpleMeterRegistry());
+        txSigner.start();
+    }
+
+    @After
+    public void tearDown() {
+        txSigner.stop();
+    }
+
+    @Test
+    public void signMatchesSignMessage() {
+        List<BigInteger> keys = new ArrayList<>(Arrays.asList(BigInteger.ONE, BigInteger.valueOf(2), N.subtract(BigInteger.ONE), N.shiftRight(1), N.shiftRight(1).add(BigInteger.ONE)));
+        for (int i = 0; i < RANDOM_KEYS; i++) {
+            keys.add(randomKey());
+        }
+        for (BigInteger key : keys) {
+            ECKeyPair keyPair = ECKeyPair.create(key);
+            for (int i = 0; i < 5; i++) {
+                byte[] hash = Hash.sha3(randomBytes(1 + random.nextInt(200)));
+                assertSignatureEquals(Sign.signMessage(hash, keyPair, false), TxSigner.sign(hash, key));
+            }
+        }
+        // 全0和全1的hash
+        ECKeyPair keyPair = ECKeyPair.create(randomKey());
+        for (byte[] hash : Arrays.asList(new byte[32], filled((byte) 0xff))) {
+            assertSignatureEquals(Sign.signMessage(hash, keyPair, false), TxSigner.sign(hash, keyPair.getPrivateKey()));
+        }
+    }
+
+    @Test
+    public void signedTransactionMatchesTransactionEncoder() {
+        for (long chainId : CHAIN_IDS) {
+            configParam.EVM_CHAIN_ID = chainId;
+            for (BigInteger nonce : EDGE_NONCES) {
+                assertTransactionEquals(randomTransaction(nonce), Credentials.create(ECKeyPair.create(randomKey())), chainId);
+            }
+            for (int i = 0; i < RANDOM_KEYS / 2; i++) {
+                BigInteger nonce = new BigInteger(1 + random.nextInt(64), random);
+                assertTransactionEquals(randomTransaction(nonce), Credentials.create(ECKeyPair.create(randomKey())), chainId);
+            }
+        }
+    }
+
+    @Test
+    public void batchAndAsyncMatchInline() throws Exception {
+        configParam.EVM_CHAIN_ID = 2021;
+        Credentials credentials = Credentials.create(ECKeyPair.create(randomKey()));
+        List<RawTransaction> transactions = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            RawTransaction transaction = randomTransaction(BigInteger.valueOf(i));
+            transactions.add(transaction);
+            expected.add(Numeric.toHexString(TransactionEncoder.signMessage(transaction, 2021, credentials)));
+        }
+        assertEquals(expected, txSigner.signAll(transactions, credentials));
+        for (int i = 0; i < transactions.size(); i++) {
+            assertEquals(expected.get(i), txSigner.signAsync(transactions.get(i), credentials).get());
+            assertEquals(expected.get(i), txSigner.sign(transactions.get(i), credentials));
+        }
+    }
+
+    private void assertTransactionEquals(RawTransaction transaction, Credentials credentials, long chainId) {
+        String expected = Numeric.toHexString(TransactionEncoder.signMessage(transaction, chainId, credentials));
+        assertEquals("chainId " + chainId + ", nonce " + transaction.getNonce(), expected, txSigner.signInline(transaction, credentials));
+    }
+
+    private static void assertSignatureEquals(Sign.SignatureData expected, Sign.SignatureData actual) {
+        assertArrayEquals(expected.getR(), actual.getR());
+        assertArrayEquals(expected.getS(), actual.getS());
+        assertArrayEquals(expected.getV(), actual.getV());
+    }
+
+    private RawTransaction randomTransaction(BigInteger nonce) {
+        BigInteger gasPrice = random.nextBoolean() ? BigInteger.ZERO : new BigInteger(1 + random.nextInt(64), random);
+        BigInteger gasLimit = BigInteger.valueOf(21000 + random.nextInt(1000000));
+        String to = Numeric.toHexString(randomBytes(20));
+        String data = Numeric.toHexString(randomBytes(4 + 32 * random.nextInt(4)));
+        if (random.nextInt(4) == 0) {
+            return RawTransaction.createTransaction(nonce, gasPrice, gasLimit, to, new BigInteger(1 + random.nextInt(128), random), "");
+        }
+        return RawTransaction.createTransaction(nonce, gasPrice, gasLimit, to, data);
+    }
+
+    private BigInteger randomKey() {
+        BigInteger key;
+        do {
+            key = new BigInteger(256, random);
+        } while (key.signum() == 0 || key.compareTo(N) >= 0);
+        return key;
+    }
+
+    private byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] filled(byte value) {
+        byte[] bytes = new byte[32];
+        Arrays.fill(bytes, value);
+        return bytes;
+    }
+}